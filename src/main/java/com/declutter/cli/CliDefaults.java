@@ -1,5 +1,7 @@
 package com.declutter.cli;
 
+import com.declutter.output.OutputWriter;
+
 import java.nio.file.Path;
 
 public final class CliDefaults {
@@ -9,4 +11,8 @@ public final class CliDefaults {
     String userHome = System.getProperty("user.home");
     return Path.of(userHome, "Documents");
   }
+
+  public static Path cacheDirectory(Path outputDirectory, String name) {
+    return outputDirectory.resolve(OutputWriter.DECLUTTERED_DIRECTORY).resolve(".cache").resolve(name);
+  }
 }
@@ -0,0 +1,21 @@
+package com.declutter.cli;
+
+import com.declutter.scrape.BrowserDaemon;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(name = "daemon", description = "Keep a warm browser running for later exec and convert runs")
+public class DaemonCommand implements Runnable {
+  @Option(names = {"--port"}, description = "Loopback port for the DevTools endpoint")
+  private int port = BrowserDaemon.DEFAULT_PORT;
+
+  @Option(
+      names = {"-b", "--browser-path"},
+      description = "Path to the Chrome executable")
+  private String browserPath;
+
+  @Override
+  public void run() {
+    BrowserDaemon.run(browserPath, port);
+  }
+}
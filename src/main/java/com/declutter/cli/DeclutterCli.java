@@ -5,6 +5,7 @@ import picocli.CommandLine.Command;
 @Command(
     name = "declutter",
     description = "A tool that declutters any URL into clean reading formats",
-    subcommands = {ExecCommand.class, ReplCommand.class, ConvertCommand.class},
+    subcommands = {
+        ExecCommand.class, IngestCommand.class, ReplCommand.class, ConvertCommand.class, DaemonCommand.class},
     mixinStandardHelpOptions = true)
 public class DeclutterCli {}
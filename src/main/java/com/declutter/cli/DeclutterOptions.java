@@ -0,0 +1,444 @@
+package com.declutter.cli;
+
+import com.declutter.core.DeclutterRequest;
+import com.declutter.core.DeclutterService;
+import com.declutter.llm.LatencyHistograms;
+import com.declutter.llm.LlmCache;
+import com.declutter.llm.LlmClientFactory;
+import com.declutter.llm.Provider;
+import com.declutter.llm.ProviderDefaults;
+import com.declutter.output.OutputFormat;
+import com.declutter.output.OutputWriter;
+import com.declutter.output.Styles;
+import com.declutter.output.TemplateRenderer;
+import com.declutter.scrape.BoilerplateFilter;
+import com.declutter.scrape.BrowserPool;
+import com.declutter.scrape.HostScheduler;
+import com.declutter.scrape.HostStrategy;
+import com.declutter.scrape.HttpCache;
+import com.declutter.scrape.HttpFetcher;
+import com.declutter.scrape.PageReadiness;
+import com.declutter.scrape.Pagination;
+import com.declutter.scrape.ResourceBlocker;
+import com.declutter.scrape.Scraper;
+import com.declutter.scrape.SiteTemplates;
+import com.declutter.scrape.StealthPolicy;
+import com.declutter.scrape.StealthProfile;
+import com.declutter.util.MarkdownChunker;
+import com.declutter.util.MarkdownCleaner;
+import picocli.CommandLine.Option;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Options shared by every command that declutters URLs, and the wiring they imply.
+public class DeclutterOptions {
+  private static final int DEFAULT_MAX_OUTPUT_TOKENS = 10_000;
+  private static final int DEFAULT_PARALLEL = 4;
+  private static final int DEFAULT_LLM_PARALLEL = 4;
+  private static final int DEFAULT_HEDGE_PERCENTILE = 95;
+
+  @Option(names = {"-t", "--max_tokens"}, description = "Max tokens in LLM output")
+  private int maxTokens = DEFAULT_MAX_OUTPUT_TOKENS;
+
+  @Option(
+      names = {"-f", "--format"},
+      description = "Output format: md, pdf, html")
+  private String outputFormat = OutputFormat.PDF.id();
+
+  @Option(
+      names = {"-s", "--style"},
+      description = "Styling of the output")
+  private String styleName = Styles.DEFAULT_STYLE;
+
+  @Option(
+      names = {"-d", "--directory"},
+      description = "Output directory")
+  private Path outputDirectory = CliDefaults.defaultOutputDirectory();
+
+  @Option(
+      names = {"-g", "--gemini-key"},
+      description = "Gemini API key",
+      defaultValue = "${env:GEMINI_API_KEY}")
+  private String geminiKey;
+
+  @Option(
+      names = {"-o", "--openai-key"},
+      description = "OpenAI API key",
+      defaultValue = "${env:OPENAI_API_KEY}")
+  private String openAiKey;
+
+  @Option(
+      names = {"-r", "--open-router-key"},
+      description = "OpenRouter API key",
+      defaultValue = "${env:OPENROUTER_API_KEY}")
+  private String openRouterKey;
+
+  @Option(
+      names = {"-a", "--anthropic-key"},
+      description = "Anthropic API key",
+      defaultValue = "${env:ANTHROPIC_API_KEY}")
+  private String anthropicKey;
+
+  @Option(
+      names = {"--groq-key"},
+      description = "Groq API key",
+      defaultValue = "${env:GROQ_API_KEY}")
+  private String groqKey;
+
+  @Option(
+      names = {"--inception-key"},
+      description = "Inception API key",
+      defaultValue = "${env:INCEPTION_API_KEY}")
+  private String inceptionKey;
+
+  @Option(
+      names = {"-m", "--model-name"},
+      description = "Model name",
+      defaultValue = "${env:DEFAULT_DECLUTTER_MODEL}")
+  private String modelName;
+
+  @Option(
+      names = {"-p", "--provider"},
+      description = "Provider name: gemini, anthropic, openai, openrouter, ollama, groq, inception")
+  private String provider;
+
+  @Option(
+      names = {"-b", "--browser-path"},
+      description = "Path to the Chrome executable")
+  private String browserPath;
+
+  @Option(
+      names = {"--browser"},
+      description = "Force Playwright browser render instead of fast HTTP fetch")
+  private boolean browserMode;
+
+  @Option(
+      names = {"--connect-timeout"},
+      description = "Fast fetch connect timeout in seconds")
+  private long connectTimeoutSeconds = HttpFetcher.DEFAULT_CONNECT_TIMEOUT.toSeconds();
+
+  @Option(
+      names = {"--read-timeout"},
+      description = "Fast fetch response timeout in seconds")
+  private long readTimeoutSeconds = HttpFetcher.DEFAULT_READ_TIMEOUT.toSeconds();
+
+  @Option(
+      names = {"--max-connections"},
+      description = "Max concurrent fast fetch requests")
+  private int maxConnections = HttpFetcher.DEFAULT_MAX_CONCURRENCY;
+
+  @Option(
+      names = {"--max-page-bytes"},
+      description = "Stop reading a fast-fetched page after this many bytes")
+  private long maxPageBytes = HttpFetcher.DEFAULT_MAX_PAGE_BYTES;
+
+  @Option(
+      names = {"--no-http-cache"},
+      description = "Do not read or write the on-disk HTTP cache for fast fetches")
+  private boolean noHttpCache;
+
+  @Option(
+      names = {"--load-resources"},
+      description = "Let the browser download images, fonts, media and trackers")
+  private boolean loadResources;
+
+  @Option(
+      names = {"--block-domain"},
+      description = "Extra third-party domain to block during browser render (repeatable)")
+  private List<String> blockDomains = new ArrayList<>();
+
+  @Option(
+      names = {"--host-rps"},
+      description = "Max requests per second to any one host")
+  private double hostRequestsPerSecond = HostScheduler.DEFAULT_REQUESTS_PER_SECOND;
+
+  @Option(
+      names = {"--host-connections"},
+      description = "Max concurrent requests to any one host")
+  private int hostConnections = HostScheduler.DEFAULT_MAX_CONCURRENT_PER_HOST;
+
+  @Option(
+      names = {"--host-jitter"},
+      description = "Random extra delay in milliseconds added between requests to the same host")
+  private long hostJitterMillis = HostScheduler.DEFAULT_JITTER.toMillis();
+
+  @Option(
+      names = {"--stealth"},
+      description = "Browser humanization profile: none, light, full")
+  private String stealth = StealthProfile.FULL.id();
+
+  @Option(
+      names = {"--stealth-host"},
+      description = "Per-host humanization profile, e.g. docs.example.com=none (repeatable)")
+  private Map<String, String> stealthHosts = new LinkedHashMap<>();
+
+  @Option(
+      names = {"--no-daemon"},
+      description = "Always launch a browser in this process, even if a browser daemon is running")
+  private boolean noDaemon;
+
+  @Option(
+      names = {"--no-host-memory"},
+      description = "Do not use or update the learned per-host fetch strategy")
+  private boolean noHostMemory;
+
+  @Option(
+      names = {"--no-site-template"},
+      description = "Do not learn or strip the blocks that recur across a host's pages")
+  private boolean noSiteTemplate;
+
+  @Option(
+      names = {"--max-pages"},
+      description = "Follow a paginated article's next pages up to this many pages in total (1, the default, disables)")
+  private int maxPages = Pagination.DEFAULT_MAX_PAGES;
+
+  @Option(
+      names = {"--prefilter"},
+      description = "Strip page boilerplate before the LLM sees it: off (default), low, medium, high")
+  private String prefilter = BoilerplateFilter.Level.OFF.id();
+
+  @Option(
+      names = {"--chunk-tokens"},
+      description = "Split pages longer than this many tokens into pieces decluttered in parallel (0 disables)")
+  private int chunkTokens = MarkdownChunker.DEFAULT_CHUNK_TOKENS;
+
+  @Option(
+      names = {"--llm-parallel"},
+      description = "LLM calls made at once for the pieces of one long page")
+  private int llmParallel = DEFAULT_LLM_PARALLEL;
+
+  @Option(
+      names = {"--no-url-aliases"},
+      description = "Send link and image URLs to the LLM verbatim instead of as short references")
+  private boolean noUrlAliases;
+
+  @Option(
+      names = {"--no-llm-cache"},
+      description = "Always call the LLM, even for a prompt it has answered before")
+  private boolean noLlmCache;
+
+  @Option(
+      names = {"--no-stream"},
+      description = "Wait for the whole LLM answer instead of streaming it")
+  private boolean noStream;
+
+  @Option(
+      names = {"--hedge-provider"},
+      description = "Also ask this provider when the main one is slower than usual, and keep the first answer")
+  private String hedgeProvider;
+
+  @Option(
+      names = {"--hedge-model"},
+      description = "Model for the hedge provider (defaults to the provider's default model)")
+  private String hedgeModel;
+
+  @Option(
+      names = {"--hedge-percentile"},
+      description = "Hedge a call once it is slower than this percentile of the main provider's calls")
+  private int hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+  @Option(
+      names = {"--browser-workers"},
+      description = "Browsers kept warm for renders when several URLs are processed")
+  private int browserWorkers = BrowserPool.DEFAULT_SIZE;
+
+  @Option(
+      names = {"--parallel"},
+      description = "URLs processed at once when there are several")
+  private int parallel = DEFAULT_PARALLEL;
+
+  public List<DeclutterRequest> requests(List<URL> urls) {
+    OutputFormat format = OutputFormat.from(outputFormat);
+    BoilerplateFilter.Level prefilterLevel = BoilerplateFilter.Level.from(prefilter);
+    if (chunkTokens < 0) {
+      throw new IllegalArgumentException("chunk-tokens cannot be negative");
+    }
+    if (llmParallel < 1) {
+      throw new IllegalArgumentException("llm-parallel must be at least 1");
+    }
+    if (hedgePercentile < 50 || hedgePercentile > 99) {
+      throw new IllegalArgumentException("hedge-percentile must be between 50 and 99");
+    }
+    validateFetchSettings();
+    if (!Styles.STYLES.containsKey(styleName)) {
+      throw new IllegalArgumentException("style can only be one of: " + Styles.STYLES.keySet());
+    }
+    validateOutputDirectory(outputDirectory);
+
+    Provider resolvedProvider = ProviderResolver.resolve(
+        provider,
+        geminiKey,
+        openAiKey,
+        openRouterKey,
+        anthropicKey,
+        groqKey,
+        inceptionKey);
+
+    String resolvedModel = (modelName == null || modelName.isBlank())
+        ? ProviderDefaults.DEFAULT_MODELS.get(resolvedProvider)
+        : modelName;
+
+    Provider resolvedHedgeProvider = null;
+    String resolvedHedgeModel = null;
+    if (hedgeProvider != null && !hedgeProvider.isBlank()) {
+      resolvedHedgeProvider = ProviderResolver.resolve(
+          hedgeProvider,
+          geminiKey,
+          openAiKey,
+          openRouterKey,
+          anthropicKey,
+          groqKey,
+          inceptionKey);
+      resolvedHedgeModel = (hedgeModel == null || hedgeModel.isBlank())
+          ? ProviderDefaults.DEFAULT_MODELS.get(resolvedHedgeProvider)
+          : hedgeModel;
+      if (resolvedHedgeProvider == resolvedProvider && resolvedHedgeModel.equals(resolvedModel)) {
+        throw new IllegalArgumentException("hedge-provider and hedge-model must name a different model");
+      }
+    }
+
+    List<DeclutterRequest> requests = new ArrayList<>();
+    for (URL url : urls) {
+      requests.add(new DeclutterRequest(
+          url,
+          format,
+          styleName,
+          outputDirectory,
+          maxTokens,
+          resolvedProvider,
+          resolvedModel,
+          browserPath,
+          !browserMode,
+          maxPages,
+          prefilterLevel,
+          chunkTokens,
+          llmParallel,
+          !noUrlAliases,
+          resolvedHedgeProvider,
+          resolvedHedgeModel,
+          hedgePercentile,
+          geminiKey,
+          openAiKey,
+          openRouterKey,
+          anthropicKey,
+          groqKey,
+          inceptionKey));
+    }
+    return requests;
+  }
+
+  public HttpFetcher httpFetcher() {
+    validateFetchSettings();
+    HttpFetcher.Settings fetchSettings = new HttpFetcher.Settings(
+        Duration.ofSeconds(connectTimeoutSeconds),
+        Duration.ofSeconds(readTimeoutSeconds),
+        maxConnections,
+        maxPageBytes);
+    HostScheduler.Settings hostSettings = new HostScheduler.Settings(
+        hostRequestsPerSecond,
+        hostConnections,
+        Duration.ofMillis(hostJitterMillis));
+    return new HttpFetcher(
+        Scraper.userAgent(),
+        fetchSettings,
+        noHttpCache ? null : new HttpCache(CliDefaults.cacheDirectory(outputDirectory, "http")),
+        new HostScheduler(hostSettings));
+  }
+
+  public DeclutterService service(HttpFetcher httpFetcher) {
+    ResourceBlocker resourceBlocker = loadResources
+        ? ResourceBlocker.disabled()
+        : ResourceBlocker.withExtraDomains(blockDomains);
+    HostStrategy hostStrategy = noHostMemory
+        ? HostStrategy.disabled()
+        : HostStrategy.persistent(CliDefaults.cacheDirectory(outputDirectory, "hosts").resolve("strategy.properties"));
+    Scraper scraper = new Scraper(
+        httpFetcher, browserWorkers, PageReadiness.defaults(), resourceBlocker, hostStrategy, stealthPolicy(),
+        !noDaemon);
+    SiteTemplates siteTemplates = noSiteTemplate
+        ? SiteTemplates.disabled()
+        : SiteTemplates.persistent(CliDefaults.cacheDirectory(outputDirectory, "templates"));
+    return new DeclutterService(
+        scraper,
+        new OutputWriter(new TemplateRenderer()),
+        new LlmClientFactory(
+            noLlmCache ? null : new LlmCache(CliDefaults.cacheDirectory(outputDirectory, "llm")),
+            !noStream,
+            LatencyHistograms.persistent(
+                CliDefaults.cacheDirectory(outputDirectory, "latency").resolve("llm.properties"))),
+        MarkdownCleaner.defaults(),
+        siteTemplates);
+  }
+
+  // The options service() and httpFetcher() are built from, for telling whether two commands would build the same
+  // service. The output directory is left out: outputs follow it, only the caches stay where they were.
+  List<Object> serviceSettings() {
+    return List.of(
+        connectTimeoutSeconds,
+        readTimeoutSeconds,
+        maxConnections,
+        maxPageBytes,
+        noHttpCache,
+        loadResources,
+        List.copyOf(blockDomains),
+        hostRequestsPerSecond,
+        hostConnections,
+        hostJitterMillis,
+        stealth,
+        Map.copyOf(stealthHosts),
+        noDaemon,
+        noHostMemory,
+        noSiteTemplate,
+        noLlmCache,
+        noStream,
+        browserWorkers);
+  }
+
+  public void declutter(DeclutterService service, List<DeclutterRequest> requests) {
+    if (requests.size() == 1) {
+      service.declutter(requests.getFirst());
+    } else {
+      service.declutterAll(requests, parallel);
+    }
+  }
+
+  private StealthPolicy stealthPolicy() {
+    Map<String, StealthProfile> hosts = new LinkedHashMap<>();
+    stealthHosts.forEach((host, profile) -> hosts.put(host, StealthProfile.from(profile)));
+    return new StealthPolicy(StealthProfile.from(stealth), hosts);
+  }
+
+  // Checked before any fetcher is built, so a bad value is reported by name rather than by the HTTP client.
+  private void validateFetchSettings() {
+    if (connectTimeoutSeconds < 1) {
+      throw new IllegalArgumentException("connect-timeout must be at least 1 second");
+    }
+    if (readTimeoutSeconds < 1) {
+      throw new IllegalArgumentException("read-timeout must be at least 1 second");
+    }
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("max-connections must be at least 1");
+    }
+  }
+
+  private void validateOutputDirectory(Path outputDirectory) {
+    if (outputDirectory == null) {
+      throw new IllegalArgumentException("Output directory cannot be null");
+    }
+    if (!Files.exists(outputDirectory) || !Files.isDirectory(outputDirectory)) {
+      throw new IllegalArgumentException(
+          "Cannot generate output in " + outputDirectory + " directory please provide write permissions");
+    }
+    if (!Files.isWritable(outputDirectory)) {
+      throw new IllegalArgumentException(
+          "Cannot generate output in " + outputDirectory + " directory please provide write permissions");
+    }
+  }
+}
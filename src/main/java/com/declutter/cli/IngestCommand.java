@@ -0,0 +1,108 @@
+package com.declutter.cli;
+
+import com.declutter.core.DeclutterService;
+import com.declutter.scrape.FeedCollector;
+import com.declutter.scrape.HttpFetcher;
+import com.declutter.util.ConsoleUtil;
+import com.declutter.util.UrlUtil;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+@Command(name = "ingest", description = "Declutter every article listed in sitemaps or RSS/Atom feeds")
+public class IngestCommand implements Runnable {
+  @Parameters(
+      paramLabel = "SOURCE",
+      arity = "1..*",
+      description = "Sitemap, sitemap index, RSS or Atom feed: a URL or a local file (gzip allowed)")
+  private List<String> sources;
+
+  @Option(
+      names = {"--since"},
+      description = "Only entries modified or published on or after this date (yyyy-MM-dd); undated entries are skipped")
+  private String since;
+
+  @Option(
+      names = {"--include"},
+      description = "Only URLs matching this regular expression")
+  private String include;
+
+  @Option(
+      names = {"--exclude"},
+      description = "Skip URLs matching this regular expression")
+  private String exclude;
+
+  @Option(
+      names = {"--limit"},
+      description = "Declutter at most this many URLs, newest first")
+  private int limit;
+
+  @Option(
+      names = {"--list"},
+      description = "Print the matching URLs instead of decluttering them")
+  private boolean listOnly;
+
+  @Mixin
+  private DeclutterOptions options;
+
+  @Override
+  public void run() {
+    FeedCollector.Filter filter = new FeedCollector.Filter(
+        parseSince(since), pattern(include, "include"), pattern(exclude, "exclude"), limit);
+    HttpFetcher httpFetcher = options.httpFetcher();
+    List<String> urls;
+    try {
+      urls = new FeedCollector(httpFetcher, filter).collect(sources);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      httpFetcher.close();
+      throw new IllegalStateException("Interrupted while reading feeds", e);
+    }
+    if (listOnly || urls.isEmpty()) {
+      urls.forEach(System.out::println);
+      if (urls.isEmpty()) {
+        ConsoleUtil.warn("No URLs matched");
+      }
+      httpFetcher.close();
+      return;
+    }
+    ConsoleUtil.ok("Decluttering " + urls.size() + " URLs");
+    DeclutterService service = options.service(httpFetcher);
+    try {
+      options.declutter(service, options.requests(urls.stream().map(UrlUtil::normalize).toList()));
+    } finally {
+      service.close();
+    }
+  }
+
+  private static Instant parseSince(String value) {
+    if (value == null || value.isBlank()) {
+      return null;
+    }
+    try {
+      return LocalDate.parse(value.trim()).atStartOfDay().toInstant(ZoneOffset.UTC);
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("since must be a date like 2025-01-31", e);
+    }
+  }
+
+  private static Pattern pattern(String value, String name) {
+    if (value == null || value.isBlank()) {
+      return null;
+    }
+    try {
+      return Pattern.compile(value);
+    } catch (PatternSyntaxException e) {
+      throw new IllegalArgumentException(name + " is not a valid regular expression: " + e.getDescription(), e);
+    }
+  }
+}
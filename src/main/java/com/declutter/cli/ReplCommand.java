@@ -1,9 +1,5 @@
 package com.declutter.cli;
 
-import com.declutter.core.DeclutterService;
-import com.declutter.output.OutputWriter;
-import com.declutter.output.TemplateRenderer;
-import com.declutter.scrape.Scraper;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 
@@ -19,7 +15,7 @@ public class ReplCommand implements Runnable {
     System.out.println("Welcome to declutter REPL mode!");
     System.out.println("Type 'exit' or press Ctrl+C to quit at any time.");
 
-    DeclutterService sharedService = new DeclutterService(new Scraper(), new OutputWriter(new TemplateRenderer()));
+    SharedService sharedService = new SharedService();
     CommandLine execCommand = new CommandLine(new ExecCommand(sharedService));
     try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
       while (true) {
@@ -0,0 +1,32 @@
+package com.declutter.cli;
+
+import com.declutter.core.DeclutterService;
+import com.declutter.util.ConsoleUtil;
+
+import java.util.List;
+
+// The REPL's one DeclutterService, so browsers, caches and connections outlive a single command. It is built
+// from the options of the first command that runs; a later command asking for different service settings keeps
+// the first ones and is told so, rather than having them silently ignored.
+final class SharedService implements AutoCloseable {
+  private DeclutterService service;
+  private List<Object> settings;
+
+  synchronized DeclutterService get(DeclutterOptions options) {
+    if (service == null) {
+      service = options.service(options.httpFetcher());
+      settings = options.serviceSettings();
+    } else if (!settings.equals(options.serviceSettings())) {
+      ConsoleUtil.warn("Fetch, cache, host, browser, stealth and LLM client options are fixed by the first command"
+          + " of this REPL session; restart the REPL to change them");
+    }
+    return service;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (service != null) {
+      service.close();
+    }
+  }
+}
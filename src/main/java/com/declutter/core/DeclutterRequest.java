@@ -2,6 +2,7 @@ package com.declutter.core;
 
 import com.declutter.llm.Provider;
 import com.declutter.output.OutputFormat;
+import com.declutter.scrape.BoilerplateFilter;
 
 import java.net.URL;
 import java.nio.file.Path;
@@ -16,6 +17,14 @@ public record DeclutterRequest(
     String modelName,
     String browserPath,
     boolean fastMode,
+    int maxPages,
+    BoilerplateFilter.Level prefilter,
+    int chunkTokens,
+    int llmParallel,
+    boolean aliasUrls,
+    Provider hedgeProvider,
+    String hedgeModelName,
+    int hedgePercentile,
     String geminiKey,
     String openAiKey,
     String openRouterKey,
@@ -1,32 +1,66 @@
 package com.declutter.core;
 
+import com.declutter.llm.HedgingLlmClient;
 import com.declutter.llm.LlmClient;
 import com.declutter.llm.LlmClientFactory;
 import com.declutter.llm.LlmResult;
 import com.declutter.llm.Prompts;
+import com.declutter.llm.UrlAliases;
 import com.declutter.output.OutputWriter;
+import com.declutter.scrape.BoilerplateFilter;
+import com.declutter.scrape.Pagination;
+import com.declutter.scrape.ScrapedPage;
 import com.declutter.scrape.Scraper;
+import com.declutter.scrape.SiteTemplates;
 import com.declutter.util.ConsoleUtil;
+import com.declutter.util.MarkdownChunker;
+import com.declutter.util.MarkdownCleaner;
 import com.declutter.util.MarkdownUtil;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DeclutterService {
   private final Scraper scraper;
   private final OutputWriter outputWriter;
   private final LlmClientFactory llmClientFactory;
+  private final MarkdownCleaner markdownCleaner;
+  private final SiteTemplates siteTemplates;
 
   public DeclutterService(Scraper scraper, OutputWriter outputWriter) {
     this(scraper, outputWriter, new LlmClientFactory());
   }
 
   public DeclutterService(Scraper scraper, OutputWriter outputWriter, LlmClientFactory llmClientFactory) {
+    this(scraper, outputWriter, llmClientFactory, MarkdownCleaner.defaults());
+  }
+
+  public DeclutterService(
+      Scraper scraper, OutputWriter outputWriter, LlmClientFactory llmClientFactory, MarkdownCleaner markdownCleaner) {
+    this(scraper, outputWriter, llmClientFactory, markdownCleaner, SiteTemplates.inMemory());
+  }
+
+  public DeclutterService(
+      Scraper scraper,
+      OutputWriter outputWriter,
+      LlmClientFactory llmClientFactory,
+      MarkdownCleaner markdownCleaner,
+      SiteTemplates siteTemplates) {
     this.scraper = scraper;
     this.outputWriter = outputWriter;
     this.llmClientFactory = llmClientFactory;
+    this.markdownCleaner = markdownCleaner;
+    this.siteTemplates = siteTemplates;
   }
 
   public void declutter(DeclutterRequest request) {
@@ -34,12 +68,111 @@ public class DeclutterService {
     if (needsBrowser && !scraper.isInitialized()) {
       scraper.initialize(request.browserPath());
     }
-    String html = scraper.scrapePage(request.url().toString(), request.fastMode());
-    String markdown = MarkdownUtil.htmlToMarkdown(html, request.url().getHost());
-    String userPrompt = Prompts.inputPrompt(markdown);
+    ScrapedPage page = scraper.scrapePage(request.url().toString(), request.fastMode());
+    if (request.maxPages() > 1) {
+      page = stitchPages(page, request);
+    }
+    SiteTemplates.Result template = siteTemplates.apply(page.document(), request.url().toString());
+    if (template.blocksRemoved() > 0) {
+      ConsoleUtil.ok("Site template removed " + template.blocksRemoved() + " recurring block(s) (~"
+          + template.estimatedTokensSaved() + " input tokens)");
+    }
+    if (request.prefilter() != BoilerplateFilter.Level.OFF) {
+      BoilerplateFilter.Result filtered = BoilerplateFilter.apply(page.document(), request.prefilter());
+      ConsoleUtil.ok("Pre-filter removed " + filtered.percentSaved() + "% of the page (~"
+          + filtered.estimatedTokensSaved() + " input tokens)");
+    }
+    String markdown = MarkdownUtil.htmlToMarkdown(page.document(), request.url().getHost());
+    UrlAliases aliases = request.aliasUrls() ? UrlAliases.of(markdown) : UrlAliases.none(markdown);
+    if (aliases.count() > 0) {
+      ConsoleUtil.ok("Replaced " + aliases.count() + " URL(s) with short references (~"
+          + aliases.estimatedTokensSaved() + " input tokens)");
+    }
+    // Each piece gets the full output budget, so a piece must not be larger than the model may write back.
+    List<String> chunks = request.chunkTokens() > 0
+        ? MarkdownChunker.split(aliases.aliased(), Math.min(request.chunkTokens(), request.maxTokens()))
+        : List.of(aliases.aliased());
 
     System.out.println("Starting declutter");
     System.out.println("Provider: " + request.provider().id() + " | Model: " + request.modelName());
+    LlmClient client = llmClient(request);
+    if (chunks.size() > 1) {
+      ConsoleUtil.ok("Page is ~" + MarkdownChunker.estimateTokens(markdown) + " tokens, decluttering it in "
+          + chunks.size() + " pieces");
+    }
+    // The draft is kept until the finished output is written, and dropped as well if the run fails.
+    try (StreamingDraft draft = new StreamingDraft(
+        OutputWriter.markdownPath(request.url(), request.outputDirectory()), chunks.size(), aliases::restore)) {
+      LlmResult result =
+          ConsoleUtil.runLoading(() -> generate(client, chunks, request, draft), draft::progress);
+      ConsoleUtil.ok(result.cached() ? "Decluttering Complete (cached response)" : "Decluttering Complete");
+      String hedging = null;
+      if (client instanceof HedgingLlmClient hedged && hedged.hedged() > 0) {
+        hedging = hedged.hedged() + " (" + hedged.secondaryAnswered() + " answered by " + request.hedgeProvider().id()
+            + " " + request.hedgeModelName() + ")";
+        ConsoleUtil.warn("Slow LLM call(s) hedged: " + hedging);
+      }
+
+      String metadata = metadataTable(request, result, hedging);
+      String finalMarkdown = markdownCleaner.clean(aliases.restore(result.markdown()));
+
+      outputWriter.writeOutput(
+          scraper,
+          request.url(),
+          finalMarkdown,
+          metadata,
+          request.outputFormat(),
+          request.styleName(),
+          request.outputDirectory());
+    }
+  }
+
+  // Later pages are discovered from the last page fetched, and every page a pagination bar reveals is fetched
+  // at once; the host scheduler still spaces requests to the site. One merged page goes to one LLM call.
+  private ScrapedPage stitchPages(ScrapedPage first, DeclutterRequest request) {
+    List<ScrapedPage> pages = new ArrayList<>(List.of(first));
+    Set<String> seen = new HashSet<>(Set.of(Pagination.key(first.url())));
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      ScrapedPage frontier = first;
+      while (pages.size() < request.maxPages()) {
+        List<String> next = Pagination.nextPages(frontier.document(), frontier.url(), seen,
+            request.maxPages() - pages.size());
+        if (next.isEmpty()) {
+          break;
+        }
+        ConsoleUtil.ok("Fetching " + next.size() + " more page(s) of the article");
+        List<Future<ScrapedPage>> fetches = new ArrayList<>();
+        for (String url : next) {
+          fetches.add(executor.submit(() -> scraper.scrapePage(url, request.fastMode())));
+        }
+        List<ScrapedPage> fetched = new ArrayList<>();
+        for (Future<ScrapedPage> fetch : fetches) {
+          try {
+            fetched.add(fetch.get());
+          } catch (ExecutionException e) {
+            ConsoleUtil.warn("Could not fetch a later page: " + e.getCause().getMessage());
+            break;
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+        pages.addAll(fetched);
+        if (fetched.size() < next.size()) {
+          break;
+        }
+        frontier = fetched.getLast();
+      }
+    }
+    if (pages.size() == 1) {
+      return first;
+    }
+    ConsoleUtil.ok("Stitched " + pages.size() + " pages into one article");
+    return Pagination.stitch(pages);
+  }
+
+  // With a hedge provider, a call slower than the main provider usually is also sent there (see HedgingLlmClient).
+  private LlmClient llmClient(DeclutterRequest request) {
     LlmClient client = llmClientFactory.create(
         request.provider(),
         request.modelName(),
@@ -50,26 +183,99 @@ public class DeclutterService {
         request.anthropicKey(),
         request.groqKey(),
         request.inceptionKey());
-    LlmResult result = ConsoleUtil.runLoading(
-        () -> client.generate(Prompts.SYSTEM_PROMPT, userPrompt, request.maxTokens()),
-        "Decluttering content...");
-    ConsoleUtil.ok("Decluttering Complete");
-
-    String metadata = metadataTable(request, result);
-    String finalMarkdown = result.markdown() == null ? "" : result.markdown();
-    finalMarkdown = MarkdownUtil.removeNonImageMarkdownImages(finalMarkdown);
-
-    outputWriter.writeOutput(
-        scraper,
-        request.url(),
-        finalMarkdown,
-        metadata,
-        request.outputFormat(),
-        request.styleName(),
-        request.outputDirectory());
+    if (request.hedgeProvider() == null) {
+      return client;
+    }
+    LlmClient secondary = llmClientFactory.create(
+        request.hedgeProvider(),
+        request.hedgeModelName(),
+        request.maxTokens(),
+        request.geminiKey(),
+        request.openAiKey(),
+        request.openRouterKey(),
+        request.anthropicKey(),
+        request.groqKey(),
+        request.inceptionKey());
+    return llmClientFactory.hedge(
+        client, request.provider(), secondary, request.hedgeProvider(), request.hedgePercentile());
+  }
+
+  // Pieces are independent calls, so a long page takes about as long as its pieces divided by llmParallel.
+  // Their answers are stitched back in order and their token usage added up. Every answer streams into the
+  // draft as it arrives.
+  private LlmResult generate(
+      LlmClient client, List<String> chunks, DeclutterRequest request, StreamingDraft draft) {
+    if (chunks.size() == 1) {
+      return client.stream(Prompts.SYSTEM_PROMPT, Prompts.inputPrompt(chunks.getFirst()), request.maxTokens(),
+          text -> draft.append(0, text));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(request.llmParallel(), chunks.size()));
+    try {
+      List<Future<LlmResult>> calls = new ArrayList<>();
+      for (int i = 0; i < chunks.size(); i++) {
+        int piece = i;
+        String userPrompt = Prompts.chunkPrompt(chunks.get(i), i + 1, chunks.size());
+        calls.add(executor.submit(() -> {
+          LlmResult part = client.stream(Prompts.SYSTEM_PROMPT, userPrompt, request.maxTokens(),
+              text -> draft.append(piece, text));
+          draft.complete(piece);
+          return part;
+        }));
+      }
+      List<String> parts = new ArrayList<>();
+      int inputTokens = 0;
+      int outputTokens = 0;
+      int totalTokens = 0;
+      Integer cacheReadTokens = null;
+      Integer cacheWriteTokens = null;
+      boolean complete = true;
+      boolean cached = true;
+      for (Future<LlmResult> call : calls) {
+        LlmResult part = call.get();
+        parts.add(part.markdown());
+        inputTokens += part.inputTokens();
+        outputTokens += part.outputTokens();
+        totalTokens += part.totalTokens();
+        cacheReadTokens = addReported(cacheReadTokens, part.cacheReadTokens());
+        cacheWriteTokens = addReported(cacheWriteTokens, part.cacheWriteTokens());
+        complete &= part.complete();
+        cached &= part.cached();
+      }
+      return new LlmResult(MarkdownChunker.stitch(parts), inputTokens, outputTokens, totalTokens, cacheReadTokens,
+          cacheWriteTokens, complete, cached);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new IllegalStateException("Decluttering a piece of the page failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while decluttering the page", e);
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
-  private String metadataTable(DeclutterRequest request, LlmResult result) {
+  // A count stays null (not reported) until some piece's provider reports it.
+  private static Integer addReported(Integer total, Integer count) {
+    return count == null ? total : (total == null ? 0 : total) + count;
+  }
+
+  // Several URLs at once: the scraper's host scheduler hands them out round-robin by host, so requests to one
+  // site stay within its politeness limits while other sites keep the workers busy. A failed URL does not stop the
+  // others, but the run fails once they are done, so the command exits non-zero.
+  public void declutterAll(List<DeclutterRequest> requests, int workers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("parallel workers must be at least 1");
+    }
+    int failed = scraper.hostScheduler().runAll(
+        requests, request -> request.url().toString(), this::declutter, workers);
+    if (failed > 0) {
+      throw new IllegalStateException(failed + " of " + requests.size() + " URLs failed");
+    }
+  }
+
+  private String metadataTable(DeclutterRequest request, LlmResult result, String hedging) {
     Map<String, String> rows = new LinkedHashMap<>();
     rows.put("Url", request.url().toString());
     rows.put("Provider", request.provider().id());
@@ -78,6 +284,18 @@ public class DeclutterService {
     rows.put("Input Tokens", String.valueOf(result.inputTokens()));
     rows.put("Output Tokens", String.valueOf(result.outputTokens()));
     rows.put("Total Tokens", String.valueOf(result.totalTokens()));
+    if (result.cacheReadTokens() != null) {
+      rows.put("Cache Read Tokens", String.valueOf(result.cacheReadTokens()));
+    }
+    if (result.cacheWriteTokens() != null) {
+      rows.put("Cache Write Tokens", String.valueOf(result.cacheWriteTokens()));
+    }
+    if (result.cached()) {
+      rows.put("Cached Response", "yes");
+    }
+    if (hedging != null) {
+      rows.put("Hedged Calls", hedging);
+    }
 
     StringBuilder sb = new StringBuilder();
     sb.append("| Metadata | Value |\n|-------|-------|\n");
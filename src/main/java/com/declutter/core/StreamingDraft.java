@@ -0,0 +1,118 @@
+package com.declutter.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+// The model's answer written next to the .md output, as <name>.md.part, while it is generated, so the start of a
+// long page can be read before the end is written. Pieces of a chunked page stream in parallel, but the file is
+// kept in page order: the earliest unfinished piece is written through and later ones are held back until it
+// completes. Text is written a whole line at a time, through restore, so short URL references are already
+// expanded in the draft. The output from an earlier run is left alone; closing the draft deletes it, once the
+// finished output has been written or the run has failed.
+class StreamingDraft implements AutoCloseable {
+  private static final String PIECE_SEPARATOR = "\n\n";
+
+  private final Path path;
+  private final Writer writer;
+  private final UnaryOperator<String> restore;
+  private final StringBuilder line = new StringBuilder();
+  private final List<StringBuilder> held = new ArrayList<>();
+  private final boolean[] completed;
+  private int current;
+  private long chars;
+  private long firstTokenNanos;
+
+  StreamingDraft(Path markdownPath, int pieces, UnaryOperator<String> restore) {
+    this.path = markdownPath.resolveSibling(markdownPath.getFileName() + ".part");
+    this.restore = restore;
+    this.completed = new boolean[pieces];
+    for (int i = 0; i < pieces; i++) {
+      held.add(new StringBuilder());
+    }
+    try {
+      Files.createDirectories(path.getParent());
+      this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to write output: " + path, e);
+    }
+  }
+
+  synchronized void append(int piece, String text) {
+    if (text == null || text.isEmpty()) {
+      return;
+    }
+    if (chars == 0) {
+      firstTokenNanos = System.nanoTime();
+    }
+    chars += text.length();
+    if (piece == current) {
+      line.append(text);
+      int end = line.lastIndexOf("\n") + 1;
+      if (end > 0) {
+        write(line.substring(0, end));
+        line.delete(0, end);
+      }
+    } else {
+      held.get(piece).append(text);
+    }
+  }
+
+  synchronized void complete(int piece) {
+    completed[piece] = true;
+    if (piece == current) {
+      flushLine();
+    }
+    while (current < completed.length && completed[current]) {
+      current++;
+      if (current < completed.length) {
+        line.append(PIECE_SEPARATOR).append(held.get(current));
+        held.get(current).setLength(0);
+        if (completed[current]) {
+          flushLine();
+        }
+      }
+    }
+  }
+
+  // Output size and speed use the same four-characters-per-token estimate as the chunker; the provider's
+  // exact counts only arrive with the finished answer.
+  synchronized String progress() {
+    if (chars == 0) {
+      return "Decluttering content...";
+    }
+    long tokens = chars / 4;
+    double seconds = (System.nanoTime() - firstTokenNanos) / 1_000_000_000.0;
+    String rate = seconds < 0.5 ? "" : String.format(" | %.0f tokens/s", tokens / seconds);
+    return String.format("Decluttering content... ~%d tokens (~%.1f KB)%s", tokens, chars / 1024.0, rate);
+  }
+
+  private void flushLine() {
+    write(line.toString());
+    line.setLength(0);
+  }
+
+  private void write(String text) {
+    try {
+      writer.write(restore.apply(text));
+      writer.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to write output: " + path, e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      writer.close();
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to write output: " + path, e);
+    }
+  }
+}
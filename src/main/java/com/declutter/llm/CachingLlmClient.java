@@ -0,0 +1,58 @@
+package com.declutter.llm;
+
+import com.declutter.util.ConsoleUtil;
+
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Answers a prompt from the LlmCache when the same provider and model have answered it before. Only complete
+// answers are kept: an empty one, or one cut off by the token limit, is asked for again next time. A cache that
+// cannot be read or written is warned about and the model is asked as if it were not there.
+public class CachingLlmClient implements LlmClient {
+  private final LlmClient delegate;
+  private final LlmCache cache;
+  private final Provider provider;
+  private final String modelName;
+
+  public CachingLlmClient(LlmClient delegate, LlmCache cache, Provider provider, String modelName) {
+    this.delegate = delegate;
+    this.cache = cache;
+    this.provider = provider;
+    this.modelName = modelName;
+  }
+
+  @Override
+  public LlmResult generate(String systemPrompt, String userPrompt, int maxTokens) {
+    return stream(systemPrompt, userPrompt, maxTokens, partial -> {});
+  }
+
+  // A cached answer is handed over whole.
+  @Override
+  public LlmResult stream(String systemPrompt, String userPrompt, int maxTokens, Consumer<String> onPartial) {
+    String key = LlmCache.key(provider, modelName, maxTokens, systemPrompt, userPrompt);
+    Optional<LlmResult> cached = cached(key);
+    if (cached.isPresent()) {
+      onPartial.accept(cached.get().markdown());
+      return cached.get();
+    }
+    LlmResult result = delegate.stream(systemPrompt, userPrompt, maxTokens, onPartial);
+    if (result.complete() && result.markdown() != null && !result.markdown().isBlank()) {
+      try {
+        cache.put(key, result);
+      } catch (UncheckedIOException e) {
+        ConsoleUtil.warn("LLM cache update failed: " + e.getMessage());
+      }
+    }
+    return result;
+  }
+
+  private Optional<LlmResult> cached(String key) {
+    try {
+      return cache.get(key);
+    } catch (UncheckedIOException e) {
+      ConsoleUtil.warn("LLM cache lookup failed: " + e.getMessage());
+      return Optional.empty();
+    }
+  }
+}
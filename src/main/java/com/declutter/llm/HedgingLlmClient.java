@@ -0,0 +1,225 @@
+package com.declutter.llm;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Asks a second provider as well when the first one is slow to answer. The primary gets the prompt alone for the
+// hedge delay, a percentile of its recorded latencies; if it has neither streamed a token nor answered by then,
+// or has failed, the same prompt goes to the secondary. Whichever call produces output first is kept and the
+// other is cancelled, so a stalled provider costs the delay rather than its full timeout, for roughly
+// (100 - percentile)% extra calls. Latency is time to the first token, or to the answer for clients that do not
+// stream. Answers served from the LlmCache are not recorded. A call cancelled before its first token records the
+// time it was given: only a lower bound, but it lands at or above the hedge delay, where the true latency is too.
+// Leaving it out would keep only the calls faster than the delay, each percentile would come out lower than the
+// last, and the delay would shrink towards MIN_DELAY, hedging far more than (100 - percentile)% of calls.
+public class HedgingLlmClient implements LlmClient {
+  static final Duration MIN_DELAY = Duration.ofMillis(500);
+
+  private final LlmClient primary;
+  private final String primaryKey;
+  private final LlmClient secondary;
+  private final String secondaryKey;
+  private final LatencyHistograms latencies;
+  private final int percentile;
+  private final Duration fallbackDelay;
+  private final Duration minDelay;
+  private final AtomicInteger hedged = new AtomicInteger();
+  private final AtomicInteger secondaryAnswered = new AtomicInteger();
+
+  // The keys name each client's histogram in latencies; fallbackDelay applies until the primary has enough.
+  public HedgingLlmClient(
+      LlmClient primary,
+      String primaryKey,
+      LlmClient secondary,
+      String secondaryKey,
+      LatencyHistograms latencies,
+      int percentile,
+      Duration fallbackDelay) {
+    this(primary, primaryKey, secondary, secondaryKey, latencies, percentile, fallbackDelay, MIN_DELAY);
+  }
+
+  HedgingLlmClient(
+      LlmClient primary,
+      String primaryKey,
+      LlmClient secondary,
+      String secondaryKey,
+      LatencyHistograms latencies,
+      int percentile,
+      Duration fallbackDelay,
+      Duration minDelay) {
+    this.primary = primary;
+    this.primaryKey = primaryKey;
+    this.secondary = secondary;
+    this.secondaryKey = secondaryKey;
+    this.latencies = latencies;
+    this.percentile = percentile;
+    this.fallbackDelay = fallbackDelay;
+    this.minDelay = minDelay;
+  }
+
+  public int hedged() {
+    return hedged.get();
+  }
+
+  public int secondaryAnswered() {
+    return secondaryAnswered.get();
+  }
+
+  Duration hedgeDelay() {
+    Duration delay = latencies.percentile(primaryKey, percentile).orElse(fallbackDelay);
+    return delay.compareTo(minDelay) < 0 ? minDelay : delay;
+  }
+
+  @Override
+  public LlmResult generate(String systemPrompt, String userPrompt, int maxTokens) {
+    return stream(systemPrompt, userPrompt, maxTokens, partial -> {});
+  }
+
+  @Override
+  public LlmResult stream(String systemPrompt, String userPrompt, int maxTokens, Consumer<String> onPartial) {
+    Race race = new Race(onPartial);
+    // Not closed with try-with-resources: that would wait for the losing call.
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    try {
+      Future<LlmResult> first = executor.submit(
+          () -> race.run(0, primary, primaryKey, systemPrompt, userPrompt, maxTokens));
+      Future<LlmResult> second = null;
+      if (!race.await(hedgeDelay().toNanos(), 1)) {
+        hedged.incrementAndGet();
+        second = executor.submit(() -> race.run(1, secondary, secondaryKey, systemPrompt, userPrompt, maxTokens));
+        race.await(Long.MAX_VALUE, 2);
+      }
+      int winner = race.winner();
+      if (winner < 0) {
+        throw race.failure(0);
+      }
+      Future<LlmResult> loser = winner == 0 ? second : first;
+      if (loser != null && !loser.isDone()) {
+        loser.cancel(true);
+        race.recordCancelled(1 - winner, winner == 0 ? secondaryKey : primaryKey);
+      }
+      LlmResult result = (winner == 0 ? first : second).get();
+      if (winner == 1) {
+        secondaryAnswered.incrementAndGet();
+      }
+      return result;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new IllegalStateException("LLM call failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the LLM", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // The first call to stream a token, or to answer, claims the race; only the winner's text is passed on.
+  private class Race {
+    private final Consumer<String> onPartial;
+    private final long[] started = new long[2];
+    private final long[] firstOutput = new long[2];
+    private final boolean[] timed = new boolean[2];
+    private final RuntimeException[] failures = new RuntimeException[2];
+    private int winner = -1;
+
+    private Race(Consumer<String> onPartial) {
+      this.onPartial = onPartial;
+    }
+
+    private LlmResult run(int attempt, LlmClient client, String key, String systemPrompt, String userPrompt,
+                          int maxTokens) {
+      synchronized (this) {
+        started[attempt] = System.nanoTime();
+      }
+      try {
+        LlmResult result = client.stream(systemPrompt, userPrompt, maxTokens, text -> {
+          if (claim(attempt)) {
+            onPartial.accept(text);
+          }
+        });
+        claim(attempt);
+        Duration latency;
+        synchronized (this) {
+          latency = result.cached() || timed[attempt]
+              ? null
+              : Duration.ofNanos(firstOutput[attempt] - started[attempt]);
+          timed[attempt] = true;
+        }
+        if (latency != null) {
+          latencies.record(key, latency);
+        }
+        return result;
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          failures[attempt] = e;
+          notifyAll();
+        }
+        throw e;
+      }
+    }
+
+    private synchronized boolean claim(int attempt) {
+      if (firstOutput[attempt] == 0) {
+        firstOutput[attempt] = System.nanoTime();
+      }
+      if (winner < 0) {
+        winner = attempt;
+        notifyAll();
+      }
+      return winner == attempt;
+    }
+
+    // Waits until a call has claimed the race or all `attempts` calls have failed; false if the time ran out.
+    private synchronized boolean await(long nanos, int attempts) throws InterruptedException {
+      long deadline = System.nanoTime() + nanos;
+      while (winner < 0 && failed() < attempts) {
+        if (nanos == Long.MAX_VALUE) {
+          wait();
+          continue;
+        }
+        long left = deadline - System.nanoTime();
+        if (left <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, left);
+      }
+      return winner >= 0;
+    }
+
+    private int failed() {
+      return (failures[0] != null ? 1 : 0) + (failures[1] != null ? 1 : 0);
+    }
+
+    private synchronized int winner() {
+      return winner;
+    }
+
+    private synchronized RuntimeException failure(int attempt) {
+      return failures[attempt] != null ? failures[attempt] : failures[1 - attempt];
+    }
+
+    // A loser that had already started answering has its real latency; one that had not, the time it was given.
+    // Each call is timed once, here or when it returns, whichever comes first.
+    private void recordCancelled(int attempt, String key) {
+      Duration latency;
+      synchronized (this) {
+        if (timed[attempt] || started[attempt] == 0) {
+          return;
+        }
+        timed[attempt] = true;
+        long end = firstOutput[attempt] != 0 ? firstOutput[attempt] : System.nanoTime();
+        latency = Duration.ofNanos(end - started[attempt]);
+      }
+      latencies.record(key, latency);
+    }
+  }
+}
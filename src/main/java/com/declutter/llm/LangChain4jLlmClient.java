@@ -2,9 +2,12 @@ package com.declutter.llm;
 
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.anthropic.AnthropicTokenUsage;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.FinishReason;
 import dev.langchain4j.model.output.TokenUsage;
 
 import java.util.List;
@@ -26,11 +29,28 @@ public class LangChain4jLlmClient implements LlmClient {
         .build();
 
     ChatResponse response = model.chat(request);
-    String markdown = response.aiMessage().text();
+    return result(response);
+  }
+
+  // Prompt-cache counts only come with the provider-specific usage types.
+  static LlmResult result(ChatResponse response) {
     TokenUsage usage = response.tokenUsage();
     int inputTokens = usage != null && usage.inputTokenCount() != null ? usage.inputTokenCount() : 0;
     int outputTokens = usage != null && usage.outputTokenCount() != null ? usage.outputTokenCount() : 0;
     int totalTokens = usage != null && usage.totalTokenCount() != null ? usage.totalTokenCount() : 0;
-    return new LlmResult(markdown, inputTokens, outputTokens, totalTokens);
+    Integer cacheReadTokens = null;
+    Integer cacheWriteTokens = null;
+    if (usage instanceof AnthropicTokenUsage anthropic) {
+      cacheReadTokens = orZero(anthropic.cacheReadInputTokens());
+      cacheWriteTokens = orZero(anthropic.cacheCreationInputTokens());
+    } else if (usage instanceof OpenAiTokenUsage openAi && openAi.inputTokensDetails() != null) {
+      cacheReadTokens = orZero(openAi.inputTokensDetails().cachedTokens());
+    }
+    return new LlmResult(response.aiMessage().text(), inputTokens, outputTokens, totalTokens, cacheReadTokens,
+        cacheWriteTokens, response.finishReason() == FinishReason.STOP, false);
+  }
+
+  private static int orZero(Integer count) {
+    return count != null ? count : 0;
   }
 }
@@ -0,0 +1,94 @@
+package com.declutter.llm;
+
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Streams the answer, so its first lines can be shown and written while the rest is still being generated.
+// The call still returns only once the model is done, with the complete answer and its token usage. Interrupting
+// the waiting thread (a hedged call that lost) also cancels the stream, so the provider stops generating; the
+// handle to do that only comes with the first token, so a stream that has not started yet is cancelled then.
+public class LangChain4jStreamingLlmClient implements LlmClient {
+  private final StreamingChatModel model;
+
+  public LangChain4jStreamingLlmClient(StreamingChatModel model) {
+    this.model = model;
+  }
+
+  @Override
+  public LlmResult generate(String systemPrompt, String userPrompt, int maxTokens) {
+    return stream(systemPrompt, userPrompt, maxTokens, partial -> {});
+  }
+
+  @Override
+  public LlmResult stream(String systemPrompt, String userPrompt, int maxTokens, Consumer<String> onPartial) {
+    ChatRequest request = ChatRequest.builder()
+        .messages(List.of(
+            SystemMessage.from(systemPrompt),
+            UserMessage.from(userPrompt)))
+        .maxOutputTokens(maxTokens)
+        .build();
+
+    CompletableFuture<ChatResponse> done = new CompletableFuture<>();
+    AtomicReference<StreamingHandle> handle = new AtomicReference<>();
+    AtomicBoolean abandoned = new AtomicBoolean();
+    model.chat(request, new StreamingChatResponseHandler() {
+      @Override
+      public void onPartialResponse(String partial) {
+        onPartial.accept(partial);
+      }
+
+      @Override
+      public void onPartialResponse(PartialResponse partial, PartialResponseContext context) {
+        handle.set(context.streamingHandle());
+        if (abandoned.get()) {
+          context.streamingHandle().cancel();
+          return;
+        }
+        onPartial.accept(partial.text());
+      }
+
+      @Override
+      public void onCompleteResponse(ChatResponse response) {
+        done.complete(response);
+      }
+
+      @Override
+      public void onError(Throwable error) {
+        done.completeExceptionally(error);
+      }
+    });
+
+    ChatResponse response;
+    try {
+      response = done.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new IllegalStateException("LLM streaming call failed", e.getCause());
+    } catch (InterruptedException e) {
+      abandoned.set(true);
+      StreamingHandle started = handle.get();
+      if (started != null) {
+        started.cancel();
+      }
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the LLM", e);
+    }
+    return LangChain4jLlmClient.result(response);
+  }
+}
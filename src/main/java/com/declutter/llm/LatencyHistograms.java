@@ -0,0 +1,134 @@
+package com.declutter.llm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+// How long each provider takes to start answering, as histograms with log-spaced buckets: the first bucket
+// holds calls up to 50 ms and each next one reaches a quarter further, to about five minutes. A percentile is
+// the upper edge of the bucket it falls in, so it is never more than a quarter off. Counts are halved once a
+// histogram holds MAX_SAMPLES, so recent calls outweigh old ones, and kept across runs when persistent.
+public class LatencyHistograms {
+  static final int MIN_SAMPLES = 20;
+  private static final int MAX_SAMPLES = 1000;
+  private static final double FIRST_BUCKET_MILLIS = 50;
+  private static final double GROWTH = 1.25;
+  private static final int BUCKETS = 40;
+
+  private final Path file;
+  private Map<String, long[]> histograms;
+
+  private LatencyHistograms(Path file) {
+    this.file = file;
+  }
+
+  public static LatencyHistograms persistent(Path file) {
+    return new LatencyHistograms(file);
+  }
+
+  public static LatencyHistograms inMemory() {
+    return new LatencyHistograms(null);
+  }
+
+  public synchronized void record(String key, Duration latency) {
+    long[] counts = histograms().computeIfAbsent(key, k -> new long[BUCKETS]);
+    counts[bucket(latency)]++;
+    if (Arrays.stream(counts).sum() >= MAX_SAMPLES) {
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] /= 2;
+      }
+    }
+    save();
+  }
+
+  // Empty until the key has MIN_SAMPLES calls, too few to tell a usual latency from an unlucky one.
+  public synchronized Optional<Duration> percentile(String key, int percentile) {
+    long[] counts = histograms().get(key);
+    long total = counts == null ? 0 : Arrays.stream(counts).sum();
+    if (total < MIN_SAMPLES) {
+      return Optional.empty();
+    }
+    long rank = (long) Math.ceil(total * percentile / 100.0);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Optional.of(upperEdge(i));
+      }
+    }
+    return Optional.of(upperEdge(BUCKETS - 1));
+  }
+
+  private static int bucket(Duration latency) {
+    double millis = Math.max(latency.toNanos() / 1_000_000.0, FIRST_BUCKET_MILLIS);
+    int bucket = (int) Math.ceil(Math.log(millis / FIRST_BUCKET_MILLIS) / Math.log(GROWTH) - 1e-9);
+    return Math.min(bucket, BUCKETS - 1);
+  }
+
+  private static Duration upperEdge(int bucket) {
+    return Duration.ofMillis(Math.round(FIRST_BUCKET_MILLIS * Math.pow(GROWTH, bucket)));
+  }
+
+  private Map<String, long[]> histograms() {
+    if (histograms == null) {
+      histograms = new HashMap<>();
+      if (file != null && Files.exists(file)) {
+        load();
+      }
+    }
+    return histograms;
+  }
+
+  // One line per key: its bucket counts, space-separated. Unreadable lines are dropped and learned again.
+  private void load() {
+    Properties props = new Properties();
+    try (InputStream input = Files.newInputStream(file)) {
+      props.load(input);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read LLM latencies from " + file, e);
+    }
+    for (String key : props.stringPropertyNames()) {
+      String[] parts = props.getProperty(key).trim().split("\\s+");
+      if (parts.length != BUCKETS) {
+        continue;
+      }
+      try {
+        histograms.put(key, Arrays.stream(parts).mapToLong(Long::parseLong).toArray());
+      } catch (NumberFormatException ignored) {
+        // Skip the entry; the provider's latency will simply be learned again.
+      }
+    }
+  }
+
+  private void save() {
+    if (file == null) {
+      return;
+    }
+    Properties props = new Properties();
+    for (Map.Entry<String, long[]> entry : histograms.entrySet()) {
+      props.setProperty(entry.getKey(),
+          Arrays.stream(entry.getValue()).mapToObj(String::valueOf).collect(Collectors.joining(" ")));
+    }
+    try {
+      Files.createDirectories(file.getParent());
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      try (OutputStream output = Files.newOutputStream(temp)) {
+        props.store(output, null);
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write LLM latencies to " + file, e);
+    }
+  }
+}
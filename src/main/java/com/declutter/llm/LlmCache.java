@@ -0,0 +1,196 @@
+package com.declutter.llm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+// Size-bounded, least-recently-used cache of model answers, addressed by a hash of everything that decides the
+// answer: provider, model, output budget and both prompts. Re-running a page to change its style or format, or
+// after a failed PDF render, then costs a disk read instead of a model call. Each entry is the answer plus a
+// properties file with the token counts of the call that produced it; the answer file's modification time
+// doubles as the LRU clock. Both files are written to a temporary sibling and moved into place, so a crash or a
+// full disk never leaves a half-written answer to be served later.
+public class LlmCache {
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  private static final String BODY_SUFFIX = ".md";
+  private static final String META_SUFFIX = ".meta";
+
+  private final Path directory;
+  private final long maxBytes;
+  private long totalBytes = -1;
+
+  public LlmCache(Path directory) {
+    this(directory, DEFAULT_MAX_BYTES);
+  }
+
+  public LlmCache(Path directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  // Every part is length-prefixed, so no two different requests run together into the same digest input.
+  public static String key(Provider provider, String modelName, int maxTokens, String systemPrompt,
+                           String userPrompt) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (String part : List.of(provider.id(), modelName, String.valueOf(maxTokens), systemPrompt, userPrompt)) {
+        byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+        digest.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+        digest.update(bytes);
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  public synchronized Optional<LlmResult> get(String key) {
+    Path body = bodyPath(key);
+    Path meta = metaPath(key);
+    if (!Files.exists(body) || !Files.exists(meta)) {
+      return Optional.empty();
+    }
+    try {
+      Properties props = new Properties();
+      try (InputStream input = Files.newInputStream(meta)) {
+        props.load(input);
+      }
+      LlmResult result = new LlmResult(
+          Files.readString(body, StandardCharsets.UTF_8),
+          Integer.parseInt(props.getProperty("inputTokens")),
+          Integer.parseInt(props.getProperty("outputTokens")),
+          Integer.parseInt(props.getProperty("totalTokens")),
+          optionalInt(props.getProperty("cacheReadTokens")),
+          optionalInt(props.getProperty("cacheWriteTokens")),
+          true,
+          true);
+      Files.setLastModifiedTime(body, FileTime.from(Instant.now()));
+      return Optional.of(result);
+    } catch (IOException | NumberFormatException e) {
+      remove(key);
+      return Optional.empty();
+    }
+  }
+
+  public synchronized void put(String key, LlmResult result) {
+    Properties props = new Properties();
+    props.setProperty("inputTokens", String.valueOf(result.inputTokens()));
+    props.setProperty("outputTokens", String.valueOf(result.outputTokens()));
+    props.setProperty("totalTokens", String.valueOf(result.totalTokens()));
+    if (result.cacheReadTokens() != null) {
+      props.setProperty("cacheReadTokens", String.valueOf(result.cacheReadTokens()));
+    }
+    if (result.cacheWriteTokens() != null) {
+      props.setProperty("cacheWriteTokens", String.valueOf(result.cacheWriteTokens()));
+    }
+    try {
+      Files.createDirectories(directory);
+      long total = currentSize();
+      Path bodyPath = bodyPath(key);
+      long previous = Files.exists(bodyPath) ? Files.size(bodyPath) : 0;
+      Path bodyTemp = temp(bodyPath);
+      Files.writeString(bodyTemp, result.markdown(), StandardCharsets.UTF_8);
+      Path metaPath = metaPath(key);
+      Path metaTemp = temp(metaPath);
+      try (OutputStream output = Files.newOutputStream(metaTemp)) {
+        props.store(output, null);
+      }
+      Files.move(bodyTemp, bodyPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      Files.move(metaTemp, metaPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      totalBytes = total - previous + Files.size(bodyPath);
+      evictIfNeeded();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write LLM cache entry " + key, e);
+    }
+  }
+
+  public synchronized void remove(String key) {
+    try {
+      Path body = bodyPath(key);
+      if (totalBytes >= 0 && Files.exists(body)) {
+        totalBytes -= Files.size(body);
+      }
+      Files.deleteIfExists(body);
+      Files.deleteIfExists(metaPath(key));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to remove LLM cache entry " + key, e);
+    }
+  }
+
+  private long currentSize() throws IOException {
+    if (totalBytes < 0) {
+      totalBytes = 0;
+      for (Path body : bodies()) {
+        totalBytes += Files.size(body);
+      }
+    }
+    return totalBytes;
+  }
+
+  private void evictIfNeeded() throws IOException {
+    if (totalBytes <= maxBytes) {
+      return;
+    }
+    List<Path> bodies = bodies();
+    bodies.sort(Comparator.comparing(LlmCache::lastModified));
+    for (Path body : bodies) {
+      if (totalBytes <= maxBytes) {
+        break;
+      }
+      long size = Files.size(body);
+      String name = body.getFileName().toString();
+      Files.deleteIfExists(body);
+      Files.deleteIfExists(body.resolveSibling(name.substring(0, name.length() - BODY_SUFFIX.length()) + META_SUFFIX));
+      totalBytes -= size;
+    }
+  }
+
+  private List<Path> bodies() throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return new ArrayList<>();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return new ArrayList<>(files.filter(p -> p.getFileName().toString().endsWith(BODY_SUFFIX)).toList());
+    }
+  }
+
+  private static Integer optionalInt(String value) {
+    return value == null ? null : Integer.valueOf(value);
+  }
+
+  private static FileTime lastModified(Path path) {
+    try {
+      return Files.getLastModifiedTime(path);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  private static Path temp(Path file) {
+    return file.resolveSibling(file.getFileName() + ".tmp");
+  }
+
+  private Path bodyPath(String key) {
+    return directory.resolve(key + BODY_SUFFIX);
+  }
+
+  private Path metaPath(String key) {
+    return directory.resolve(key + META_SUFFIX);
+  }
+}
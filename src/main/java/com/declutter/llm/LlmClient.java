@@ -1,5 +1,17 @@
 package com.declutter.llm;
 
+import java.util.function.Consumer;
+
 public interface LlmClient {
   LlmResult generate(String systemPrompt, String userPrompt, int maxTokens);
+
+  // The same call, handing each piece of the answer to onPartial as it arrives. A client that cannot stream
+  // hands over the whole answer at the end.
+  default LlmResult stream(String systemPrompt, String userPrompt, int maxTokens, Consumer<String> onPartial) {
+    LlmResult result = generate(systemPrompt, userPrompt, maxTokens);
+    if (result.markdown() != null && !result.markdown().isEmpty()) {
+      onPartial.accept(result.markdown());
+    }
+    return result;
+  }
 }
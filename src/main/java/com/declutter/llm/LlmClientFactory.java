@@ -1,65 +1,222 @@
 package com.declutter.llm;
 
 import dev.langchain4j.model.anthropic.AnthropicChatModel;
+import dev.langchain4j.model.anthropic.AnthropicStreamingChatModel;
 import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.googleai.GoogleAiGeminiChatModel;
+import dev.langchain4j.model.googleai.GoogleAiGeminiStreamingChatModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class LlmClientFactory {
+  private static final String OPENROUTER_URL = "https://openrouter.ai/api/v1";
+  private static final String GROQ_URL = "https://api.groq.com/openai/v1";
+  private static final String INCEPTION_URL = "https://api.inceptionlabs.ai/v1";
+  private static final String OLLAMA_URL = "http://localhost:11434";
+  // Every call starts with the same system prompt. Anthropic caches it at an explicit breakpoint; OpenAI and
+  // Gemini cache a repeated prefix on their own, and OpenAI routes calls sharing this key to the same cache.
+  private static final Map<String, Object> OPENAI_PROMPT_CACHE = Map.of("prompt_cache_key", "declutter-system-prompt");
+  static final Duration IDLE_TIMEOUT = Duration.ofMinutes(10);
+  // Hedge delays until a provider has a latency history: a first token usually comes within seconds, a whole
+  // answer within a minute.
+  static final Duration FIRST_TOKEN_HEDGE_DELAY = Duration.ofSeconds(10);
+  static final Duration ANSWER_HEDGE_DELAY = Duration.ofSeconds(60);
+
+  private final LlmCache cache;
+  private final boolean streaming;
+  private final LatencyHistograms latencies;
+  private final Map<ClientKey, Registered> clients = new ConcurrentHashMap<>();
+  private final ProviderHttpClients httpClients = new ProviderHttpClients();
+
+  public LlmClientFactory() {
+    this(null, false);
+  }
+
+  public LlmClientFactory(LlmCache cache, boolean streaming) {
+    this(cache, streaming, LatencyHistograms.inMemory());
+  }
+
+  // Clients from a factory with a cache answer repeated prompts from it; streaming clients hand the answer
+  // over as it is generated. latencies keeps the provider latencies that hedged clients learn their delay from.
+  public LlmClientFactory(LlmCache cache, boolean streaming, LatencyHistograms latencies) {
+    this.cache = cache;
+    this.streaming = streaming;
+    this.latencies = latencies;
+  }
+
+  // Latencies are kept per provider and per what is timed: the first token when streaming, else the answer.
+  public HedgingLlmClient hedge(LlmClient primary, Provider primaryProvider, LlmClient secondary,
+                                Provider secondaryProvider, int percentile) {
+    String measured = streaming ? ".first-token" : ".answer";
+    return new HedgingLlmClient(
+        primary,
+        primaryProvider.id() + measured,
+        secondary,
+        secondaryProvider.id() + measured,
+        latencies,
+        percentile,
+        streaming ? FIRST_TOKEN_HEDGE_DELAY : ANSWER_HEDGE_DELAY);
+  }
+
+  // Clients are kept for reuse, so the REPL and multi-URL runs build each model, and its HTTP client, once.
+  // The API key is part of the lookup only as a fingerprint. A client unused for IDLE_TIMEOUT is dropped.
   public LlmClient create(Provider provider, String modelName, int maxTokens, String geminiKey, String openAiKey,
                           String openRouterKey, String anthropicKey, String groqKey, String inceptionKey) {
     String resolvedModel = modelName == null || modelName.isBlank()
         ? ProviderDefaults.DEFAULT_MODELS.get(provider)
         : modelName;
+    String apiKey = switch (provider) {
+      case OPENAI -> openAiKey;
+      case OPENROUTER -> openRouterKey;
+      case GROQ -> groqKey;
+      case INCEPTION -> inceptionKey;
+      case GEMINI -> geminiKey;
+      case ANTHROPIC -> anthropicKey;
+      case OLLAMA -> null;
+    };
+    evictIdle();
+    ClientKey key = new ClientKey(provider, resolvedModel, fingerprint(apiKey), maxTokens);
+    return clients.compute(key, (k, registered) -> new Registered(
+        registered != null
+            ? registered.client()
+            : newClient(provider, resolvedModel, maxTokens, geminiKey, openAiKey, openRouterKey, anthropicKey,
+                groqKey, inceptionKey),
+        System.nanoTime())).client();
+  }
+
+  private void evictIdle() {
+    long now = System.nanoTime();
+    clients.values().removeIf(registered -> now - registered.lastUsed() > IDLE_TIMEOUT.toNanos());
+    httpClients.retainOnly(clients.keySet().stream().map(ClientKey::provider).collect(Collectors.toSet()));
+  }
 
+  private LlmClient newClient(Provider provider, String resolvedModel, int maxTokens, String geminiKey,
+                              String openAiKey, String openRouterKey, String anthropicKey, String groqKey,
+                              String inceptionKey) {
+    LlmClient client = streaming
+        ? new LangChain4jStreamingLlmClient(streamingModel(provider, resolvedModel, maxTokens, geminiKey, openAiKey,
+            openRouterKey, anthropicKey, groqKey, inceptionKey))
+        : new LangChain4jLlmClient(chatModel(provider, resolvedModel, maxTokens, geminiKey, openAiKey,
+            openRouterKey, anthropicKey, groqKey, inceptionKey));
+    return cache == null ? client : new CachingLlmClient(client, cache, provider, resolvedModel);
+  }
+
+  private ChatModel chatModel(Provider provider, String modelName, int maxTokens, String geminiKey,
+                              String openAiKey, String openRouterKey, String anthropicKey, String groqKey,
+                              String inceptionKey) {
+    return switch (provider) {
+      case OPENAI -> openAiModel(openAiKey, modelName, maxTokens);
+      case OPENROUTER -> openRouterModel(openRouterKey, modelName, maxTokens);
+      case GROQ -> groqModel(groqKey, modelName, maxTokens);
+      case INCEPTION -> inceptionModel(inceptionKey, modelName, maxTokens);
+      case GEMINI -> geminiModel(geminiKey, modelName, maxTokens);
+      case ANTHROPIC -> anthropicModel(anthropicKey, modelName, maxTokens);
+      case OLLAMA -> ollamaModel(modelName);
+    };
+  }
+
+  private StreamingChatModel streamingModel(Provider provider, String modelName, int maxTokens, String geminiKey,
+                                            String openAiKey, String openRouterKey, String anthropicKey,
+                                            String groqKey, String inceptionKey) {
     return switch (provider) {
-      case OPENAI -> new LangChain4jLlmClient(openAiModel(openAiKey, resolvedModel, maxTokens));
-      case OPENROUTER -> new LangChain4jLlmClient(openRouterModel(openRouterKey, resolvedModel, maxTokens));
-      case GROQ -> new LangChain4jLlmClient(groqModel(groqKey, resolvedModel, maxTokens));
-      case INCEPTION -> new LangChain4jLlmClient(inceptionModel(inceptionKey, resolvedModel, maxTokens));
-      case GEMINI -> new LangChain4jLlmClient(geminiModel(geminiKey, resolvedModel, maxTokens));
-      case ANTHROPIC -> new LangChain4jLlmClient(anthropicModel(anthropicKey, resolvedModel, maxTokens));
-      case OLLAMA -> new LangChain4jLlmClient(ollamaModel(resolvedModel));
+      case OPENAI -> openAiStreamingModel(provider, openAiKey, null, modelName, maxTokens);
+      case OPENROUTER -> openAiStreamingModel(provider, openRouterKey, OPENROUTER_URL, modelName, maxTokens);
+      case GROQ -> openAiStreamingModel(provider, groqKey, GROQ_URL, modelName, maxTokens);
+      case INCEPTION -> openAiStreamingModel(provider, inceptionKey, INCEPTION_URL, modelName, maxTokens);
+      case GEMINI -> GoogleAiGeminiStreamingChatModel.builder()
+          .apiKey(geminiKey)
+          .modelName(modelName)
+          .temperature(0.0)
+          .maxOutputTokens(maxTokens)
+          .httpClientBuilder(httpClients.builder(Provider.GEMINI))
+          .build();
+      case ANTHROPIC -> AnthropicStreamingChatModel.builder()
+          .apiKey(anthropicKey)
+          .modelName(modelName)
+          .temperature(0.0)
+          .maxTokens(maxTokens)
+          .cacheSystemMessages(true)
+          .httpClientBuilder(httpClients.builder(Provider.ANTHROPIC))
+          .build();
+      case OLLAMA -> OllamaStreamingChatModel.builder()
+          .baseUrl(OLLAMA_URL)
+          .modelName(modelName)
+          .temperature(0.0)
+          .numCtx(30000)
+          .httpClientBuilder(httpClients.builder(Provider.OLLAMA))
+          .build();
     };
   }
 
+  // OpenAI, and the OpenAI-compatible APIs at baseUrl; null means OpenAI itself.
+  private StreamingChatModel openAiStreamingModel(Provider provider, String apiKey, String baseUrl, String modelName,
+                                                  int maxTokens) {
+    OpenAiStreamingChatModel.OpenAiStreamingChatModelBuilder builder = OpenAiStreamingChatModel.builder()
+        .apiKey(apiKey)
+        .modelName(modelName)
+        .temperature(0.0)
+        .maxTokens(maxTokens);
+    if (baseUrl != null) {
+      builder.baseUrl(baseUrl);
+    } else {
+      builder.customParameters(OPENAI_PROMPT_CACHE);
+    }
+    return builder.httpClientBuilder(httpClients.builder(provider)).build();
+  }
+
   private ChatModel openAiModel(String apiKey, String modelName, int maxTokens) {
     return OpenAiChatModel.builder()
         .apiKey(apiKey)
         .modelName(modelName)
         .temperature(0.0)
         .maxTokens(maxTokens)
+        .customParameters(OPENAI_PROMPT_CACHE)
+        .httpClientBuilder(httpClients.builder(Provider.OPENAI))
         .build();
   }
 
   private ChatModel openRouterModel(String apiKey, String modelName, int maxTokens) {
     return OpenAiChatModel.builder()
         .apiKey(apiKey)
-        .baseUrl("https://openrouter.ai/api/v1")
+        .baseUrl(OPENROUTER_URL)
         .modelName(modelName)
         .temperature(0.0)
         .maxTokens(maxTokens)
+        .httpClientBuilder(httpClients.builder(Provider.OPENROUTER))
         .build();
   }
 
   private ChatModel groqModel(String apiKey, String modelName, int maxTokens) {
     return OpenAiChatModel.builder()
         .apiKey(apiKey)
-        .baseUrl("https://api.groq.com/openai/v1")
+        .baseUrl(GROQ_URL)
         .modelName(modelName)
         .temperature(0.0)
         .maxTokens(maxTokens)
+        .httpClientBuilder(httpClients.builder(Provider.GROQ))
         .build();
   }
 
   private ChatModel inceptionModel(String apiKey, String modelName, int maxTokens) {
     return OpenAiChatModel.builder()
         .apiKey(apiKey)
-        .baseUrl("https://api.inceptionlabs.ai/v1")
+        .baseUrl(INCEPTION_URL)
         .modelName(modelName)
         .temperature(0.0)
         .maxTokens(maxTokens)
+        .httpClientBuilder(httpClients.builder(Provider.INCEPTION))
         .build();
   }
 
@@ -69,6 +226,7 @@ public class LlmClientFactory {
         .modelName(modelName)
         .temperature(0.0)
         .maxOutputTokens(maxTokens)
+        .httpClientBuilder(httpClients.builder(Provider.GEMINI))
         .build();
   }
 
@@ -78,14 +236,34 @@ public class LlmClientFactory {
         .modelName(modelName)
         .temperature(0.0)
         .maxTokens(maxTokens)
+        .cacheSystemMessages(true)
+        .httpClientBuilder(httpClients.builder(Provider.ANTHROPIC))
         .build();
   }
 
   private ChatModel ollamaModel(String modelName) {
     return OllamaChatModel.builder()
+        .baseUrl(OLLAMA_URL)
         .modelName(modelName)
         .temperature(0.0)
         .numCtx(30000)
+        .httpClientBuilder(httpClients.builder(Provider.OLLAMA))
         .build();
   }
+
+  private static String fingerprint(String apiKey) {
+    if (apiKey == null) {
+      return "";
+    }
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest, 0, 8);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  private record ClientKey(Provider provider, String modelName, String keyFingerprint, int maxTokens) {}
+
+  private record Registered(LlmClient client, long lastUsed) {}
 }
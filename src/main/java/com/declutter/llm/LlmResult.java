@@ -1,3 +1,16 @@
 package com.declutter.llm;
 
-public record LlmResult(String markdown, int inputTokens, int outputTokens, int totalTokens) {}
+// cached is set when the answer came from the LlmCache; the token counts are then those of the original call.
+// cacheReadTokens and cacheWriteTokens are the prompt tokens the provider served from, or added to, its own
+// prompt cache, or null when it does not report them: Anthropic counts both apart from inputTokens, OpenAI-compatible
+// APIs include the read ones in it and report no writes. complete is set only when the provider says the answer ended
+// on its own (STOP, Anthropic's end_turn); an answer cut off by the token limit or a filter is not complete.
+public record LlmResult(
+    String markdown,
+    int inputTokens,
+    int outputTokens,
+    int totalTokens,
+    Integer cacheReadTokens,
+    Integer cacheWriteTokens,
+    boolean complete,
+    boolean cached) {}
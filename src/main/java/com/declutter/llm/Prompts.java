@@ -3,9 +3,10 @@ package com.declutter.llm;
 public final class Prompts {
   private static final String DOCUMENT_PLACEHOLDER = "__DOCUMENT_DATA__";
 
+  // Everything that is the same for every call lives in SYSTEM_PROMPT, the prefix providers cache; the user
+  // message is only the document, and the part number for a piece of a long one.
   public static String inputPrompt(String document) {
     return """
-Now declutter the text provided in the document section 
 <document>
 """ + document + """
 
@@ -13,6 +14,11 @@ Now declutter the text provided in the document section
 """;
   }
 
+  // One piece of a document too long for a single call; the pieces' answers are joined back in order.
+  public static String chunkPrompt(String document, int part, int parts) {
+    return "This is part " + part + " of " + parts + ".\n" + inputPrompt(document);
+  }
+
   public static final String SYSTEM_PROMPT = """
 You are a document decluttering specialist. Your task is to transform messy, web-scraped, or poorly formatted documents into clean, professional markdown while preserving all substantive content.
 
@@ -92,6 +98,11 @@ Final Checklist Before Output
 5. ✓ All article text preserved verbatim
 6. ✓ Consistent formatting applied
 
+Input
+* The document to declutter is the user message, between <document> and </document>
+* Link and image targets such as (u12) are short references that stand for the real URLs. Copy each one exactly as it is, keep it with its link or image, and never write out or invent a URL
+* A long document is sent in parts, and its user message then starts with "This is part N of M." Declutter only that part. Do not add a title, introduction or closing remarks that are not in it, and do not mention that it is a part
+
 Just produce markdown output directly no need to explain the output
 IMPORTANT: do not wrap markdown output in code section just generate output in markdown
 """;
@@ -0,0 +1,67 @@
+package com.declutter.llm;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One HTTP client per provider endpoint, shared by every model built for that provider, so a new model, key or
+// output budget reuses the connections already open to the endpoint instead of starting with a fresh TLS
+// handshake. The JDK client keeps idle connections alive and closes them itself after a while.
+class ProviderHttpClients {
+  private final Map<Provider, HttpClient> clients = new ConcurrentHashMap<>();
+
+  // The first model built for a provider decides the timeouts; every model here is built with the defaults.
+  HttpClientBuilder builder(Provider provider) {
+    return new SharedBuilder(provider);
+  }
+
+  // Forgets the clients of providers no model uses any more; a model still running keeps its own reference.
+  void retainOnly(Set<Provider> providers) {
+    clients.keySet().retainAll(providers);
+  }
+
+  private class SharedBuilder implements HttpClientBuilder {
+    private final Provider provider;
+    private Duration connectTimeout;
+    private Duration readTimeout;
+
+    private SharedBuilder(Provider provider) {
+      this.provider = provider;
+    }
+
+    @Override
+    public Duration connectTimeout() {
+      return connectTimeout;
+    }
+
+    @Override
+    public HttpClientBuilder connectTimeout(Duration timeout) {
+      this.connectTimeout = timeout;
+      return this;
+    }
+
+    @Override
+    public Duration readTimeout() {
+      return readTimeout;
+    }
+
+    @Override
+    public HttpClientBuilder readTimeout(Duration timeout) {
+      this.readTimeout = timeout;
+      return this;
+    }
+
+    @Override
+    public HttpClient build() {
+      return clients.computeIfAbsent(provider, p -> JdkHttpClient.builder()
+          .connectTimeout(connectTimeout)
+          .readTimeout(readTimeout)
+          .build());
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.declutter.llm;
+
+import com.declutter.util.UrlUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Swaps the link and image targets of a prompt for short references (u1, u2, ...) and puts the real URLs back
+// into the model's answer. Long CDN and tracking URLs cost input tokens, cost output tokens again when the
+// model copies them, and are where models most often slip a character. Known tracking parameters are dropped
+// on the way, so the restored URLs come back without them.
+public final class UrlAliases {
+  // Like CommonMark, a destination may hold balanced parentheses, as in Wikipedia's Mercury_(planet).
+  private static final Pattern DESTINATION = Pattern.compile("\\]\\(((?:[^\\s()]|\\([^\\s()]*\\))+)");
+  private static final Pattern ALIAS = Pattern.compile("\\]\\((u\\d{1,6})(?=[\\s)])");
+  private static final int MIN_URL_LENGTH = 12;
+
+  private final String aliased;
+  private final List<String> urls;
+  private final long charsSaved;
+
+  private UrlAliases(String aliased, List<String> urls, long charsSaved) {
+    this.aliased = aliased;
+    this.urls = urls;
+    this.charsSaved = charsSaved;
+  }
+
+  public static UrlAliases none(String markdown) {
+    return new UrlAliases(markdown, List.of(), 0);
+  }
+
+  // Each distinct URL gets one reference, numbered in order of first appearance. Markdown that already has
+  // targets shaped like a reference is left as it is, since its answer could not be restored unambiguously.
+  public static UrlAliases of(String markdown) {
+    if (markdown == null || ALIAS.matcher(markdown).find()) {
+      return none(markdown);
+    }
+    Map<String, String> references = new HashMap<>();
+    List<String> urls = new ArrayList<>();
+    long charsSaved = 0;
+    Matcher matcher = DESTINATION.matcher(markdown);
+    StringBuilder sb = new StringBuilder(markdown.length());
+    int last = 0;
+    while (matcher.find()) {
+      String url = matcher.group(1);
+      if (url.length() < MIN_URL_LENGTH || !url.regionMatches(true, 0, "http", 0, 4)) {
+        continue;
+      }
+      String reference = references.get(url);
+      if (reference == null) {
+        urls.add(UrlUtil.withoutTracking(url));
+        reference = "u" + urls.size();
+        references.put(url, reference);
+      }
+      sb.append(markdown, last, matcher.start(1)).append(reference);
+      last = matcher.end(1);
+      charsSaved += url.length() - reference.length();
+    }
+    if (urls.isEmpty()) {
+      return none(markdown);
+    }
+    sb.append(markdown, last, markdown.length());
+    return new UrlAliases(sb.toString(), List.copyOf(urls), charsSaved);
+  }
+
+  public String aliased() {
+    return aliased;
+  }
+
+  public int count() {
+    return urls.size();
+  }
+
+  // Per mention in the prompt; the answer saves about as much again for every URL the model keeps.
+  public long estimatedTokensSaved() {
+    return charsSaved / 4;
+  }
+
+  // A reference the model made up is left as it is.
+  public String restore(String output) {
+    if (output == null || urls.isEmpty()) {
+      return output;
+    }
+    Matcher matcher = ALIAS.matcher(output);
+    StringBuilder sb = new StringBuilder(output.length() + (int) Math.min(Integer.MAX_VALUE / 2, charsSaved));
+    int last = 0;
+    while (matcher.find()) {
+      int index = Integer.parseInt(matcher.group(1), 1, matcher.group(1).length(), 10) - 1;
+      if (index < 0 || index >= urls.size()) {
+        continue;
+      }
+      sb.append(output, last, matcher.start(1)).append(urls.get(index));
+      last = matcher.end(1);
+    }
+    sb.append(output, last, output.length());
+    return sb.toString();
+  }
+}
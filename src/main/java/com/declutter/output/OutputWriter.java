@@ -12,7 +12,7 @@ import java.nio.file.Path;
 import java.util.List;
 
 public class OutputWriter {
-  private static final String DECLUTTERED_DIRECTORY = "Decluttered";
+  public static final String DECLUTTERED_DIRECTORY = "Decluttered";
 
   private final TemplateRenderer renderer;
 
@@ -28,10 +28,8 @@ public class OutputWriter {
       OutputFormat outputFormat,
       String styleName,
       Path outputDirectory) {
-    PathParts parts = pathFromUrl(url);
-    Path finalDir = outputDirectory
-        .resolve(DECLUTTERED_DIRECTORY)
-        .resolve(parts.directory());
+    Path basePath = basePath(url, outputDirectory);
+    Path finalDir = basePath.getParent();
 
     try {
       Files.createDirectories(finalDir);
@@ -39,7 +37,6 @@ public class OutputWriter {
       throw new IllegalStateException("Failed to create output directory: " + finalDir, e);
     }
 
-    Path basePath = finalDir.resolve(parts.fileNamePrefix());
     switch (outputFormat) {
       case MD -> writeMarkdown(basePath, markdown);
       case HTML -> writeHtml(basePath, markdown, styleName);
@@ -49,6 +46,20 @@ public class OutputWriter {
     writeMetadata(basePath, metadata);
   }
 
+  // The .md file writeOutput produces for url, whatever the output format.
+  public static Path markdownPath(URL url, Path outputDirectory) {
+    Path basePath = basePath(url, outputDirectory);
+    return basePath.resolveSibling(basePath.getFileName() + ".md");
+  }
+
+  private static Path basePath(URL url, Path outputDirectory) {
+    PathParts parts = pathFromUrl(url);
+    return outputDirectory
+        .resolve(DECLUTTERED_DIRECTORY)
+        .resolve(parts.directory())
+        .resolve(parts.fileNamePrefix());
+  }
+
   private void writeMarkdown(Path basePath, String markdown) {
     Path markdownPath = basePath.resolveSibling(basePath.getFileName() + ".md");
     writeFile(markdownPath, markdown);
@@ -0,0 +1,278 @@
+package com.declutter.scrape;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Readability-style pruning of page chrome before Markdown conversion, so the model is not paid to read
+// and then delete navigation, comment threads and related-article rails. Paragraph-like blocks score their
+// parent and grandparent by text length and commas; the best-scoring container (discounted by link density)
+// is the article, and nothing on its ancestor chain is ever removed. Higher levels prune progressively more:
+// LOW drops chrome by tag, role and class name; MEDIUM also drops link-heavy blocks, though inside the article
+// only those whose class names look like chrome, since source lists and further reading are link-heavy too;
+// HIGH keeps only the article container and the siblings that score like content.
+public final class BoilerplateFilter {
+  private static final String CHROME_TAGS =
+      "nav, footer, aside, form, button, select, textarea, input, "
+          + "[role=navigation], [role=contentinfo], [role=complementary], [role=search], [aria-hidden=true]";
+  private static final Pattern UNLIKELY = Pattern.compile(
+      "comment|disqus|related|share|sharing|social|newsletter|subscribe|signup|cookie|consent|promo|sponsor"
+          + "|advert|\\bads?\\b|banner|popup|modal|breadcrumb|sidebar|masthead|menu|skip-link|outbrain|taboola",
+      Pattern.CASE_INSENSITIVE);
+  private static final Pattern LIKELY = Pattern.compile(
+      "article|body|content|entry|main|post|story|text|blog|prose|markdown|doc",
+      Pattern.CASE_INSENSITIVE);
+  private static final String SCORED = "p, pre, td, blockquote, li, h2, h3, dd";
+  private static final String BLOCKS = "div, section, ul, ol, table, header, dl";
+  private static final Set<String> MEDIA = Set.of("img", "pre", "table");
+  private static final double MIN_ARTICLE_SHARE = 0.5;
+
+  private BoilerplateFilter() {}
+
+  public enum Level {
+    OFF("off"),
+    LOW("low"),
+    MEDIUM("medium"),
+    HIGH("high");
+
+    private final String id;
+
+    Level(String id) {
+      this.id = id;
+    }
+
+    public String id() {
+      return id;
+    }
+
+    public static Level from(String value) {
+      for (Level level : values()) {
+        if (level.id.equalsIgnoreCase(value)) {
+          return level;
+        }
+      }
+      throw new IllegalArgumentException("prefilter can only be one of: off, low, medium, high");
+    }
+  }
+
+  // Sizes are characters of text plus link and image URLs, which is what the Markdown conversion emits.
+  public record Result(long charsBefore, long charsAfter) {
+    public long estimatedTokensSaved() {
+      return Math.max(0, charsBefore - charsAfter) / 4;
+    }
+
+    public int percentSaved() {
+      return charsBefore == 0 ? 0 : (int) (100 * (charsBefore - charsAfter) / charsBefore);
+    }
+  }
+
+  // Subtree totals, gathered in one bottom-up pass; asking each block for its text() instead is quadratic
+  // in nesting depth, which multi-megabyte pages make very visible.
+  private record Stats(int text, int linkText, int commas, boolean media) {
+    double linkDensity() {
+      return text == 0 ? 0 : Math.min(1, (double) linkText / text);
+    }
+  }
+
+  public static Result apply(Document document, Level level) {
+    Element body = document.body();
+    long before = size(body);
+    if (level == Level.OFF) {
+      return new Result(before, before);
+    }
+    Element article = topCandidate(body, measure(body));
+    Set<Element> protectedChain = new HashSet<>();
+    for (Element e = article; e != null; e = e.parent()) {
+      protectedChain.add(e);
+    }
+
+    for (Element element : body.select(CHROME_TAGS)) {
+      removeUnlessProtected(element, protectedChain);
+    }
+    for (Element element : body.select("[class], [id]")) {
+      String names = element.className() + " " + element.id();
+      if (UNLIKELY.matcher(names).find() && !LIKELY.matcher(names).find()) {
+        removeUnlessProtected(element, protectedChain);
+      }
+    }
+
+    if (level.compareTo(Level.MEDIUM) >= 0) {
+      Map<Element, Stats> stats = measure(body);
+      for (Element block : body.select(BLOCKS)) {
+        Stats blockStats = stats.get(block);
+        if (detached(block) || protectedChain.contains(block) || blockStats.media()) {
+          continue;
+        }
+        boolean insideArticle = article != null && isDescendant(block, article);
+        double density = blockStats.linkDensity();
+        boolean linkRail = insideArticle
+            ? density > 0.6 && blockStats.text() < 500 && UNLIKELY.matcher(block.className() + " " + block.id()).find()
+            : density > 0.5;
+        if (linkRail || (!insideArticle && article != null && blockStats.text() < 25)) {
+          block.remove();
+        }
+      }
+    }
+
+    if (level == Level.HIGH && article != null && article != body) {
+      Map<Element, Stats> stats = measure(body);
+      // A candidate holding a minority of what is left (one row of a table-only page, say) is not the
+      // article, and narrowing to it would throw the real content away.
+      if (stats.get(article).text() >= MIN_ARTICLE_SHARE * stats.get(body).text()) {
+        keepArticleOnly(body, article, stats);
+      }
+    }
+    return new Result(before, size(body));
+  }
+
+  private static Element topCandidate(Element body, Map<Element, Stats> stats) {
+    Map<Element, Double> scores = new IdentityHashMap<>();
+    for (Element block : body.select(SCORED)) {
+      Stats blockStats = stats.get(block);
+      if (blockStats.text() < 25) {
+        continue;
+      }
+      double score = 2 + blockStats.commas() + Math.min(3, blockStats.text() / 100);
+      Element parent = block.parent();
+      if (parent != null) {
+        scores.merge(parent, score, Double::sum);
+        Element grandparent = parent.parent();
+        if (grandparent != null) {
+          scores.merge(grandparent, score / 2, Double::sum);
+        }
+      }
+    }
+    Element best = null;
+    double bestScore = 0;
+    for (Map.Entry<Element, Double> entry : scores.entrySet()) {
+      Stats candidate = stats.get(entry.getKey());
+      double density = candidate == null ? 0 : candidate.linkDensity();
+      double score = (entry.getValue() + classWeight(entry.getKey())) * (1 - density);
+      if (score > bestScore) {
+        best = entry.getKey();
+        bestScore = score;
+      }
+    }
+    return best;
+  }
+
+  // Readability's sibling rule: keep siblings that are substantial prose, then make them the whole body.
+  private static void keepArticleOnly(Element body, Element article, Map<Element, Stats> stats) {
+    List<Element> kept = new ArrayList<>();
+    Element title = body.selectFirst("h1");
+    if (title != null && !isDescendant(title, article)) {
+      kept.add(title);
+    }
+    Element parent = article.parent();
+    for (Element sibling : parent == null ? List.of(article) : parent.children()) {
+      if (sibling == article) {
+        kept.add(sibling);
+        continue;
+      }
+      Stats siblingStats = stats.get(sibling);
+      boolean prose = siblingStats.text() > 80 && siblingStats.linkDensity() < 0.25;
+      boolean figure = !sibling.select("img").isEmpty() && siblingStats.text() < 200;
+      if (prose || figure) {
+        kept.add(sibling);
+      }
+    }
+    for (Element element : kept) {
+      element.remove();
+    }
+    body.empty();
+    for (Element element : kept) {
+      body.appendChild(element);
+    }
+  }
+
+  private static Map<Element, Stats> measure(Element root) {
+    Map<Element, Stats> stats = new IdentityHashMap<>();
+    NodeTraversor.traverse(new NodeVisitor() {
+      @Override
+      public void head(Node node, int depth) {}
+
+      @Override
+      public void tail(Node node, int depth) {
+        if (!(node instanceof Element element)) {
+          return;
+        }
+        int text = 0;
+        int linkText = 0;
+        int commas = 0;
+        boolean media = MEDIA.contains(element.normalName());
+        for (Node child : element.childNodes()) {
+          if (child instanceof TextNode textNode) {
+            String value = textNode.text().strip();
+            text += value.length();
+            commas += (int) value.chars().filter(c -> c == ',').count();
+          } else if (child instanceof Element childElement) {
+            Stats childStats = stats.get(childElement);
+            text += childStats.text();
+            linkText += childStats.linkText();
+            commas += childStats.commas();
+            media |= childStats.media();
+          }
+        }
+        if (element.normalName().equals("a")) {
+          linkText = text;
+        }
+        stats.put(element, new Stats(text, linkText, commas, media));
+      }
+    }, root);
+    return stats;
+  }
+
+  // An element under an already removed subtree still has a parent, but no longer reaches the document.
+  private static boolean detached(Element element) {
+    return element.ownerDocument() == null;
+  }
+
+  private static void removeUnlessProtected(Element element, Set<Element> protectedChain) {
+    if (!detached(element) && !protectedChain.contains(element) && !element.normalName().equals("body")) {
+      element.remove();
+    }
+  }
+
+  private static double classWeight(Element element) {
+    String names = element.className() + " " + element.id();
+    double weight = 0;
+    if (LIKELY.matcher(names).find()) {
+      weight += 25;
+    }
+    if (UNLIKELY.matcher(names).find()) {
+      weight -= 25;
+    }
+    if (element.normalName().equals("article") || element.normalName().equals("main")) {
+      weight += 25;
+    }
+    return weight;
+  }
+
+  private static boolean isDescendant(Element element, Element ancestor) {
+    for (Element e = element; e != null; e = e.parent()) {
+      if (e == ancestor) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long size(Element root) {
+    long size = root.text().length();
+    for (Element element : root.select("a[href], img[src]")) {
+      size += element.hasAttr("href") ? element.attr("href").length() : element.attr("src").length();
+    }
+    return size;
+  }
+}
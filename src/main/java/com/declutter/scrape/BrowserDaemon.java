@@ -0,0 +1,110 @@
+package com.declutter.scrape;
+
+import com.declutter.util.ConsoleUtil;
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.Playwright;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+// A long-lived headless Chrome that exposes the DevTools protocol on loopback. Its endpoint and the owning
+// process id are written to a state file in the user's home, which is how CLI runs find it; a file left
+// behind by a process that is no longer alive is ignored and removed.
+public final class BrowserDaemon {
+  public static final int DEFAULT_PORT = 9339;
+  static final double CONNECT_TIMEOUT_MS = 5000;
+
+  private BrowserDaemon() {}
+
+  public static Path stateFile() {
+    return Path.of(System.getProperty("user.home"), ".declutter", "browser-daemon.properties");
+  }
+
+  public static Optional<String> endpoint() {
+    Path file = stateFile();
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+    Properties props = new Properties();
+    try (InputStream input = Files.newInputStream(file)) {
+      props.load(input);
+      long pid = Long.parseLong(props.getProperty("pid", "-1"));
+      String endpoint = props.getProperty("endpoint");
+      if (endpoint != null && ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+        return Optional.of(endpoint);
+      }
+    } catch (IOException | NumberFormatException e) {
+      // Unreadable state is treated like a stale one.
+    }
+    deleteState();
+    return Optional.empty();
+  }
+
+  // Blocks until the JVM is asked to exit (Ctrl+C or SIGTERM).
+  public static void run(String browserPath, int port) {
+    Optional<String> running = endpoint();
+    if (running.isPresent()) {
+      throw new IllegalStateException("A browser daemon is already running at " + running.get());
+    }
+    Playwright playwright = Playwright.create();
+    Browser browser;
+    try {
+      browser = playwright.chromium().launch(Scraper.launchOptions(browserPath, List.of(
+          "--remote-debugging-address=127.0.0.1",
+          "--remote-debugging-port=" + port)));
+    } catch (RuntimeException e) {
+      playwright.close();
+      throw e;
+    }
+    String endpoint = "http://127.0.0.1:" + port;
+    CountDownLatch stopped = new CountDownLatch(1);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      deleteState();
+      try {
+        browser.close();
+        playwright.close();
+      } catch (RuntimeException ignored) {
+        // The driver may already be gone with the rest of the process group.
+      }
+      stopped.countDown();
+    }, "declutter-daemon-shutdown"));
+    writeState(endpoint);
+    ConsoleUtil.ok("Browser daemon listening on " + endpoint + ". Press Ctrl+C to stop.");
+    try {
+      stopped.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void writeState(String endpoint) {
+    Properties props = new Properties();
+    props.setProperty("endpoint", endpoint);
+    props.setProperty("pid", String.valueOf(ProcessHandle.current().pid()));
+    Path file = stateFile();
+    try {
+      Files.createDirectories(file.getParent());
+      try (OutputStream output = Files.newOutputStream(file)) {
+        props.store(output, null);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write browser daemon state to " + file, e);
+    }
+  }
+
+  private static void deleteState() {
+    try {
+      Files.deleteIfExists(stateFile());
+    } catch (IOException ignored) {
+      // A stale file is detected and skipped on the next lookup anyway.
+    }
+  }
+}
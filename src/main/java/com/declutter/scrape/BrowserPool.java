@@ -0,0 +1,184 @@
+package com.declutter.scrape;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Playwright;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Playwright objects are not thread-safe, so every worker owns its own Playwright, Browser and
+// warm BrowserContext, and a worker is only ever used by the thread holding its lease.
+public class BrowserPool {
+  public static final int DEFAULT_SIZE = 1;
+  private static final long CLOSED_CHECK_MILLIS = 250;
+
+  private final int size;
+  private final Function<Playwright, Browser> launcher;
+  private final Function<Browser, BrowserContext> contextFactory;
+  private final BlockingQueue<Worker> idle;
+  private boolean started;
+  private boolean closed;
+
+  public BrowserPool(int size, Function<Playwright, Browser> launcher,
+                     Function<Browser, BrowserContext> contextFactory) {
+    if (size < 1) {
+      throw new IllegalArgumentException("browser pool size must be at least 1");
+    }
+    this.size = size;
+    this.launcher = launcher;
+    this.contextFactory = contextFactory;
+    this.idle = new ArrayBlockingQueue<>(size);
+  }
+
+  public synchronized void start() {
+    if (started) {
+      return;
+    }
+    started = true;
+    for (int i = 0; i < size; i++) {
+      Worker worker = new Worker();
+      worker.launch();
+      idle.add(worker);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // Waits in short polls, so a thread still waiting when the pool closes gives up instead of hanging.
+  public Lease lease() {
+    Worker worker = null;
+    try {
+      while (worker == null) {
+        synchronized (this) {
+          if (closed) {
+            throw new IllegalStateException("Browser pool is closed");
+          }
+        }
+        worker = idle.poll(CLOSED_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a browser", e);
+    }
+    synchronized (this) {
+      if (closed) {
+        worker.close();
+        throw new IllegalStateException("Browser pool is closed");
+      }
+    }
+    try {
+      worker.ensureContext();
+    } catch (RuntimeException e) {
+      idle.add(worker);
+      throw e;
+    }
+    return new Lease(worker);
+  }
+
+  private void release(Worker worker) {
+    synchronized (this) {
+      if (closed) {
+        worker.close();
+        return;
+      }
+    }
+    // Throw the used context away and pre-warm a fresh one, so no cookies, storage or
+    // routes leak into the next page rendered by this worker.
+    worker.resetContext();
+    idle.add(worker);
+  }
+
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    List<Worker> drained = new ArrayList<>();
+    idle.drainTo(drained);
+    for (Worker worker : drained) {
+      worker.close();
+    }
+  }
+
+  public final class Lease implements AutoCloseable {
+    private final Worker worker;
+    private boolean released;
+
+    private Lease(Worker worker) {
+      this.worker = worker;
+    }
+
+    public BrowserContext context() {
+      return worker.context;
+    }
+
+    @Override
+    public void close() {
+      if (released) {
+        return;
+      }
+      released = true;
+      release(worker);
+    }
+  }
+
+  private final class Worker {
+    private Playwright playwright;
+    private Browser browser;
+    private BrowserContext context;
+
+    private void launch() {
+      playwright = Playwright.create();
+      browser = launcher.apply(playwright);
+      context = contextFactory.apply(browser);
+    }
+
+    private void ensureContext() {
+      if (browser == null || !browser.isConnected()) {
+        close();
+        launch();
+      } else if (context == null) {
+        context = contextFactory.apply(browser);
+      }
+    }
+
+    private void resetContext() {
+      try {
+        if (context != null) {
+          context.close();
+        }
+        context = null;
+        context = contextFactory.apply(browser);
+      } catch (RuntimeException e) {
+        // The browser is gone; the next lease relaunches it.
+        context = null;
+      }
+    }
+
+    private void close() {
+      try {
+        if (browser != null) {
+          browser.close();
+        }
+      } catch (RuntimeException ignored) {
+        // Best effort; the Playwright driver is shut down below either way.
+      } finally {
+        browser = null;
+        context = null;
+      }
+      if (playwright != null) {
+        playwright.close();
+        playwright = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package com.declutter.scrape;
+
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+// java.net.http hands back the body exactly as sent, so Content-Encoding has to be undone here.
+public final class ContentDecoding {
+  public static final String ACCEPT_ENCODING = "gzip, deflate, br";
+
+  private ContentDecoding() {}
+
+  public static InputStream decode(InputStream wire, String contentEncoding) throws IOException {
+    InputStream decoded = wire;
+    if (contentEncoding == null || contentEncoding.isBlank()) {
+      return decoded;
+    }
+    // Codings are listed in the order they were applied, so undo them from last to first.
+    String[] codings = contentEncoding.split(",");
+    for (int i = codings.length - 1; i >= 0; i--) {
+      String coding = codings[i].trim().toLowerCase(Locale.ROOT);
+      decoded = switch (coding) {
+        case "gzip", "x-gzip" -> new GZIPInputStream(decoded, 8192);
+        case "deflate" -> inflate(decoded);
+        case "br" -> new BrotliInputStream(decoded);
+        case "identity", "" -> decoded;
+        default -> throw new IOException("Unsupported Content-Encoding: " + coding);
+      };
+    }
+    return decoded;
+  }
+
+  // "deflate" is meant to be zlib-wrapped, but some servers send a raw deflate stream; the zlib header tells them apart.
+  private static InputStream inflate(InputStream input) throws IOException {
+    PushbackInputStream pushback = new PushbackInputStream(input, 2);
+    byte[] header = pushback.readNBytes(2);
+    pushback.unread(header);
+    boolean zlib = header.length == 2
+        && (header[0] & 0x0F) == 8
+        && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+    Inflater inflater = new Inflater(!zlib);
+    return new InflaterInputStream(pushback, inflater, 8192) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          inflater.end();
+        }
+      }
+    };
+  }
+
+  public static final class CountingInputStream extends FilterInputStream {
+    private long count;
+
+    public CountingInputStream(InputStream input) {
+      super(input);
+    }
+
+    public long count() {
+      return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.declutter.scrape;
+
+import com.declutter.util.ConsoleUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+// Expands sitemaps, sitemap indexes and feeds into the page URLs to declutter. Each level of an index is
+// fetched concurrently (still under the per-host limits of the fetcher), child sitemaps last modified before
+// the cutoff are not fetched at all, and the result is deduplicated and ordered newest first.
+public class FeedCollector {
+  private static final int MAX_INDEX_DEPTH = 5;
+
+  private final HttpFetcher fetcher;
+  private final Filter filter;
+
+  public FeedCollector(HttpFetcher fetcher, Filter filter) {
+    this.fetcher = fetcher;
+    this.filter = filter;
+  }
+
+  // since, include and exclude may be null; limit 0 means no limit. With a since cutoff, undated entries are
+  // skipped because there is no way to tell they are recent.
+  public record Filter(Instant since, Pattern include, Pattern exclude, int limit) {
+    public static Filter none() {
+      return new Filter(null, null, null, 0);
+    }
+
+    boolean accepts(FeedReader.Entry entry) {
+      if (since != null && (entry.date() == null || entry.date().isBefore(since))) {
+        return false;
+      }
+      if (include != null && !include.matcher(entry.url()).find()) {
+        return false;
+      }
+      return exclude == null || !exclude.matcher(entry.url()).find();
+    }
+  }
+
+  public List<String> collect(List<String> sources) throws InterruptedException {
+    Map<String, Instant> pages = new LinkedHashMap<>();
+    Set<String> visited = new HashSet<>();
+    List<String> level = new ArrayList<>(sources);
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int depth = 0; depth <= MAX_INDEX_DEPTH && !level.isEmpty(); depth++) {
+        List<Future<List<FeedReader.Entry>>> reads = new ArrayList<>();
+        for (String source : level) {
+          if (visited.add(source)) {
+            reads.add(executor.submit(() -> read(source)));
+          }
+        }
+        List<String> next = new ArrayList<>();
+        for (Future<List<FeedReader.Entry>> read : reads) {
+          for (FeedReader.Entry entry : result(read)) {
+            if (entry.sitemap()) {
+              if (filter.since() == null || entry.date() == null || !entry.date().isBefore(filter.since())) {
+                next.add(entry.url());
+              }
+            } else if (isHttpUrl(entry.url()) && filter.accepts(entry)) {
+              pages.merge(entry.url(), entry.date() == null ? Instant.MIN : entry.date(),
+                  (a, b) -> a.isAfter(b) ? a : b);
+            }
+          }
+        }
+        level = next;
+      }
+    }
+    return pages.entrySet().stream()
+        .sorted(Map.Entry.<String, Instant>comparingByValue(Comparator.reverseOrder()))
+        .limit(filter.limit() > 0 ? filter.limit() : Long.MAX_VALUE)
+        .map(Map.Entry::getKey)
+        .toList();
+  }
+
+  private List<FeedReader.Entry> read(String source) throws IOException, InterruptedException {
+    List<FeedReader.Entry> entries = new ArrayList<>();
+    if (isHttpUrl(source)) {
+      fetcher.fetchRaw(source, body -> {
+        FeedReader.read(body, entries::add);
+        return null;
+      });
+    } else {
+      try (InputStream input = Files.newInputStream(Path.of(source))) {
+        FeedReader.read(input, entries::add);
+      }
+    }
+    ConsoleUtil.ok("Read " + entries.size() + " entries from " + source);
+    return entries;
+  }
+
+  private static List<FeedReader.Entry> result(Future<List<FeedReader.Entry>> read) throws InterruptedException {
+    try {
+      return read.get();
+    } catch (ExecutionException e) {
+      ConsoleUtil.warn("Skipping feed: " + e.getCause().getMessage());
+      return List.of();
+    }
+  }
+
+  private static boolean isHttpUrl(String value) {
+    try {
+      String scheme = URI.create(value).getScheme();
+      return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.declutter.scrape;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+// Pulls entry links and dates out of sitemaps, sitemap indexes, RSS and Atom with a streaming StAX pass,
+// so a 50 MB sitemap never becomes a tree in memory. Gzip is detected from the magic bytes, which covers
+// .xml.gz files served without a Content-Encoding.
+public final class FeedReader {
+  private static final Set<String> RECORDS = Set.of("url", "sitemap", "item", "entry");
+  private static final Set<String> DATES =
+      Set.of("lastmod", "pubDate", "updated", "published", "date", "publication_date");
+  private static final XMLInputFactory FACTORY = xmlInputFactory();
+
+  private FeedReader() {}
+
+  // sitemap is true for the children of a sitemap index, which point at further sitemaps rather than pages.
+  public record Entry(String url, Instant date, boolean sitemap) {}
+
+  public static void read(InputStream input, Consumer<Entry> sink) throws IOException {
+    XMLStreamReader xml = null;
+    try {
+      xml = FACTORY.createXMLStreamReader(ungzip(input));
+      String record = null;
+      String recordNamespace = null;
+      String link = null;
+      String guid = null;
+      Instant date = null;
+      StringBuilder text = new StringBuilder();
+      while (xml.hasNext()) {
+        int event = xml.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          String name = xml.getLocalName();
+          text.setLength(0);
+          if (record == null && RECORDS.contains(name)) {
+            record = name;
+            recordNamespace = Objects.toString(xml.getNamespaceURI(), "");
+            link = null;
+            guid = null;
+            date = null;
+          } else if (record != null && isFeedRecord(record) && name.equals("link") && link == null) {
+            // Atom links are attributes; only the entry's own page counts, not edit or enclosure links.
+            String href = xml.getAttributeValue(null, "href");
+            String rel = xml.getAttributeValue(null, "rel");
+            if (href != null && (rel == null || rel.equals("alternate"))) {
+              link = href.trim();
+            }
+          }
+        } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+          text.append(xml.getText());
+        } else if (event == XMLStreamConstants.END_ELEMENT && record != null) {
+          String name = xml.getLocalName();
+          String value = text.toString().trim();
+          if (name.equals(record)) {
+            String url = link != null ? link : guid;
+            if (url != null && !url.isEmpty()) {
+              sink.accept(new Entry(url, date, record.equals("sitemap")));
+            }
+            record = null;
+          } else if (name.equals("loc") && !isFeedRecord(record) && link == null
+              && recordNamespace.equals(Objects.toString(xml.getNamespaceURI(), ""))) {
+            // Image and video extensions nest their own <loc>; only the sitemap namespace's one is the page.
+            link = value;
+          } else if (name.equals("link") && isFeedRecord(record) && link == null && !value.isEmpty()) {
+            link = value;
+          } else if (name.equals("guid") && value.startsWith("http")) {
+            guid = value;
+          } else if (DATES.contains(name)) {
+            Instant parsed = parseDate(value);
+            if (parsed != null && (date == null || parsed.isAfter(date))) {
+              date = parsed;
+            }
+          }
+          text.setLength(0);
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Malformed feed: " + e.getMessage(), e);
+    } finally {
+      if (xml != null) {
+        try {
+          xml.close();
+        } catch (XMLStreamException ignored) {
+          // Nothing left to release beyond the stream, which the caller owns.
+        }
+      }
+    }
+  }
+
+  private static boolean isFeedRecord(String record) {
+    return record.equals("item") || record.equals("entry");
+  }
+
+  // Sitemaps use W3C datetime (a date, or a date and time with offset); RSS uses RFC 822 dates.
+  static Instant parseDate(String value) {
+    if (value == null || value.isBlank()) {
+      return null;
+    }
+    String trimmed = value.trim();
+    try {
+      return OffsetDateTime.parse(trimmed).toInstant();
+    } catch (DateTimeParseException ignored) {
+      // Try the next shape.
+    }
+    try {
+      return LocalDateTime.parse(trimmed).toInstant(ZoneOffset.UTC);
+    } catch (DateTimeParseException ignored) {
+      // Try the next shape.
+    }
+    try {
+      return LocalDate.parse(trimmed).atStartOfDay().toInstant(ZoneOffset.UTC);
+    } catch (DateTimeParseException ignored) {
+      // Try the next shape.
+    }
+    try {
+      return YearMonth.parse(trimmed).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    } catch (DateTimeParseException ignored) {
+      // Try the next shape.
+    }
+    try {
+      return ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  private static InputStream ungzip(InputStream input) throws IOException {
+    PushbackInputStream pushback = new PushbackInputStream(input, 2);
+    byte[] magic = pushback.readNBytes(2);
+    pushback.unread(magic);
+    boolean gzip = magic.length == 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B;
+    return gzip ? new GZIPInputStream(pushback, 8192) : pushback;
+  }
+
+  private static XMLInputFactory xmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+}
@@ -0,0 +1,189 @@
+package com.declutter.scrape;
+
+import com.declutter.util.ConsoleUtil;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Per-host politeness: every fetch or render of a host passes through acquire/release, which caps concurrent
+// requests to that host and spaces request starts by the configured rate plus jitter. A Retry-After pushes the
+// host's next start back. runAll interleaves hosts round-robin so one slow or throttled host cannot hold up the rest.
+public class HostScheduler {
+  public static final double DEFAULT_REQUESTS_PER_SECOND = 2.0;
+  public static final int DEFAULT_MAX_CONCURRENT_PER_HOST = 2;
+  public static final Duration DEFAULT_JITTER = Duration.ofMillis(250);
+  public static final Duration DEFAULT_BACKOFF = Duration.ofSeconds(5);
+  public static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(2);
+
+  private final Settings settings;
+  private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+  public HostScheduler() {
+    this(Settings.defaults());
+  }
+
+  public HostScheduler(Settings settings) {
+    if (settings.requestsPerSecond() <= 0) {
+      throw new IllegalArgumentException("requests per second must be positive");
+    }
+    if (settings.maxConcurrentPerHost() < 1) {
+      throw new IllegalArgumentException("max concurrent requests per host must be at least 1");
+    }
+    this.settings = settings;
+  }
+
+  public record Settings(double requestsPerSecond, int maxConcurrentPerHost, Duration jitter) {
+    public static Settings defaults() {
+      return new Settings(DEFAULT_REQUESTS_PER_SECOND, DEFAULT_MAX_CONCURRENT_PER_HOST, DEFAULT_JITTER);
+    }
+  }
+
+  private static final class HostState {
+    private final Semaphore permits;
+    private long nextStartNanos = System.nanoTime();
+
+    private HostState(int permits) {
+      this.permits = new Semaphore(permits, true);
+    }
+  }
+
+  public static String hostOf(String url) {
+    try {
+      String host = URI.create(url).getHost();
+      return host == null ? "" : host.toLowerCase(Locale.ROOT);
+    } catch (IllegalArgumentException e) {
+      return "";
+    }
+  }
+
+  public void acquire(String url) throws InterruptedException {
+    HostState state = state(hostOf(url));
+    state.permits.acquire();
+    long waitNanos;
+    synchronized (state) {
+      long now = System.nanoTime();
+      long start = Math.max(now, state.nextStartNanos);
+      state.nextStartNanos = start + intervalNanos();
+      waitNanos = start - now;
+    }
+    try {
+      if (waitNanos > 0) {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      }
+    } catch (InterruptedException e) {
+      state.permits.release();
+      throw e;
+    }
+  }
+
+  public void release(String url) {
+    state(hostOf(url)).permits.release();
+  }
+
+  public void backoff(String url, Duration delay) {
+    Duration capped = delay.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : delay;
+    HostState state = state(hostOf(url));
+    synchronized (state) {
+      state.nextStartNanos = Math.max(state.nextStartNanos, System.nanoTime() + capped.toNanos());
+    }
+  }
+
+  // Runs task over items with the given number of workers, handing out work round-robin across hosts and never
+  // giving a host more in-flight items than its concurrency cap. A failing item is reported and skipped, so the
+  // rest still run; the number that failed is returned.
+  public <T> int runAll(List<T> items, Function<T, String> urlOf, Consumer<T> task, int workers) {
+    AtomicInteger failed = new AtomicInteger();
+    Dispatcher<T> dispatcher = new Dispatcher<>(items, item -> hostOf(urlOf.apply(item)));
+    try (ExecutorService executor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("declutter-worker-", 0).factory())) {
+      for (int i = 0; i < Math.max(1, workers); i++) {
+        executor.submit(() -> {
+          Dispatcher.Work<T> work;
+          while ((work = dispatcher.next()) != null) {
+            try {
+              task.accept(work.item());
+            } catch (RuntimeException e) {
+              failed.incrementAndGet();
+              ConsoleUtil.warn("Failed " + urlOf.apply(work.item()) + ": " + e.getMessage());
+            } finally {
+              dispatcher.done(work.host());
+            }
+          }
+          return null;
+        });
+      }
+    }
+    return failed.get();
+  }
+
+  private HostState state(String host) {
+    return hosts.computeIfAbsent(host, h -> new HostState(settings.maxConcurrentPerHost()));
+  }
+
+  private long intervalNanos() {
+    long interval = (long) (TimeUnit.SECONDS.toNanos(1) / settings.requestsPerSecond());
+    long jitter = settings.jitter().toNanos();
+    return jitter > 0 ? interval + ThreadLocalRandom.current().nextLong(jitter + 1) : interval;
+  }
+
+  private final class Dispatcher<T> {
+    private final Map<String, Deque<T>> queues = new LinkedHashMap<>();
+    private final Map<String, Integer> inFlight = new LinkedHashMap<>();
+    private final List<String> ring;
+    private int cursor;
+
+    private record Work<T>(String host, T item) {}
+
+    private Dispatcher(List<T> items, Function<T, String> hostOf) {
+      for (T item : items) {
+        queues.computeIfAbsent(hostOf.apply(item), h -> new ArrayDeque<>()).add(item);
+      }
+      ring = new ArrayList<>(queues.keySet());
+    }
+
+    private synchronized Work<T> next() throws InterruptedException {
+      while (true) {
+        boolean pending = false;
+        for (int i = 0; i < ring.size(); i++) {
+          String host = ring.get((cursor + i) % ring.size());
+          Deque<T> queue = queues.get(host);
+          if (queue.isEmpty()) {
+            continue;
+          }
+          pending = true;
+          int running = inFlight.getOrDefault(host, 0);
+          if (running < settings.maxConcurrentPerHost()) {
+            inFlight.put(host, running + 1);
+            cursor = (cursor + i + 1) % ring.size();
+            return new Work<>(host, queue.poll());
+          }
+        }
+        if (!pending) {
+          return null;
+        }
+        wait();
+      }
+    }
+
+    private synchronized void done(String host) {
+      inFlight.merge(host, -1, Integer::sum);
+      notifyAll();
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package com.declutter.scrape;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Random;
+
+// Remembers, per host, which way of getting a page last worked, so the scraper can go straight to it.
+// Each observation adds weight to the host's outcome; weight halves every half-life and a different outcome
+// replaces the old one, so a single stale observation soon stops steering and nothing is trusted past the TTL.
+// Skipping the fast fetch takes more than one agreeing observation, since a single odd page should not move a
+// static site onto the browser path, and a host that skips it still gets a fast fetch now and then: a skipped
+// fast fetch can never be observed working again, so without those probes the outcome would only ever renew.
+public class HostStrategy {
+  public static final Duration DEFAULT_HALF_LIFE = Duration.ofDays(3);
+  public static final Duration DEFAULT_TTL = Duration.ofDays(30);
+  static final int PROBE_ONE_IN = 10;
+  private static final double TRUSTED_WEIGHT = 0.5;
+  private static final double SKIP_FAST_FETCH_WEIGHT = 1.5;
+
+  private final Path file;
+  private final Duration halfLife;
+  private final Duration ttl;
+  private final boolean enabled;
+  private final Random random;
+  private Map<String, Record> records;
+
+  private HostStrategy(Path file, Duration halfLife, Duration ttl, boolean enabled, Random random) {
+    this.file = file;
+    this.halfLife = halfLife;
+    this.ttl = ttl;
+    this.enabled = enabled;
+    this.random = random;
+  }
+
+  public static HostStrategy persistent(Path file) {
+    return new HostStrategy(file, DEFAULT_HALF_LIFE, DEFAULT_TTL, true, new Random());
+  }
+
+  public static HostStrategy inMemory() {
+    return inMemory(new Random());
+  }
+
+  static HostStrategy inMemory(Random random) {
+    return new HostStrategy(null, DEFAULT_HALF_LIFE, DEFAULT_TTL, true, random);
+  }
+
+  public static HostStrategy disabled() {
+    return new HostStrategy(null, DEFAULT_HALF_LIFE, DEFAULT_TTL, false, new Random());
+  }
+
+  public enum Outcome {
+    FAST_OK("fast-ok"),
+    JS_NOT_NEEDED("js-not-needed"),
+    NEEDS_BROWSER("needs-browser"),
+    BLOCKED("blocked");
+
+    private final String id;
+
+    Outcome(String id) {
+      this.id = id;
+    }
+
+    public String id() {
+      return id;
+    }
+
+    public boolean skipsFastFetch() {
+      return this == NEEDS_BROWSER || this == BLOCKED;
+    }
+
+    public boolean staticHtml() {
+      return this == FAST_OK || this == JS_NOT_NEEDED;
+    }
+
+    static Outcome from(String id) {
+      for (Outcome outcome : values()) {
+        if (outcome.id.equals(id)) {
+          return outcome;
+        }
+      }
+      throw new IllegalArgumentException("unknown host outcome: " + id);
+    }
+  }
+
+  private record Record(Outcome outcome, double weight, Instant updatedAt) {}
+
+  public synchronized Optional<Outcome> lookup(String url) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    Record record = records().get(HostScheduler.hostOf(url));
+    if (record == null) {
+      return Optional.empty();
+    }
+    Instant now = Instant.now();
+    double trusted = record.outcome().skipsFastFetch() ? SKIP_FAST_FETCH_WEIGHT : TRUSTED_WEIGHT;
+    if (Duration.between(record.updatedAt(), now).compareTo(ttl) > 0 || decayed(record, now) < trusted) {
+      return Optional.empty();
+    }
+    if (record.outcome().skipsFastFetch() && random.nextInt(PROBE_ONE_IN) == 0) {
+      return Optional.empty();
+    }
+    return Optional.of(record.outcome());
+  }
+
+  public synchronized void record(String url, Outcome outcome) {
+    String host = HostScheduler.hostOf(url);
+    if (!enabled || host.isEmpty()) {
+      return;
+    }
+    Instant now = Instant.now();
+    Record previous = records().get(host);
+    double weight = previous != null && previous.outcome() == outcome ? decayed(previous, now) + 1 : 1;
+    records.put(host, new Record(outcome, weight, now));
+    save();
+  }
+
+  private double decayed(Record record, Instant now) {
+    double halfLives = (double) Duration.between(record.updatedAt(), now).toMillis() / halfLife.toMillis();
+    return record.weight() * Math.pow(0.5, Math.max(0, halfLives));
+  }
+
+  private Map<String, Record> records() {
+    if (records == null) {
+      records = new HashMap<>();
+      if (file != null && Files.exists(file)) {
+        load();
+      }
+    }
+    return records;
+  }
+
+  // One line per host: "<outcome> <weight> <epoch millis>". Unreadable lines are dropped rather than trusted.
+  private void load() {
+    Properties props = new Properties();
+    try (InputStream input = Files.newInputStream(file)) {
+      props.load(input);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read host strategies from " + file, e);
+    }
+    for (String host : props.stringPropertyNames()) {
+      String[] parts = props.getProperty(host).trim().split("\\s+");
+      try {
+        records.put(host, new Record(
+            Outcome.from(parts[0]),
+            Double.parseDouble(parts[1]),
+            Instant.ofEpochMilli(Long.parseLong(parts[2]))));
+      } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ignored) {
+        // Skip the entry; the host will simply be learned again.
+      }
+    }
+  }
+
+  private void save() {
+    if (file == null) {
+      return;
+    }
+    Properties props = new Properties();
+    Instant now = Instant.now();
+    for (Map.Entry<String, Record> entry : records.entrySet()) {
+      Record record = entry.getValue();
+      if (Duration.between(record.updatedAt(), now).compareTo(ttl) > 0) {
+        continue;
+      }
+      props.setProperty(entry.getKey(), String.format(Locale.ROOT, "%s %.3f %d",
+          record.outcome().id(), record.weight(), record.updatedAt().toEpochMilli()));
+    }
+    try {
+      Files.createDirectories(file.getParent());
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      try (OutputStream output = Files.newOutputStream(temp)) {
+        props.store(output, null);
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write host strategies to " + file, e);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.declutter.scrape;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Set;
+
+// Parses HTML straight off the wire. Script, style and noscript subtrees are dropped as soon as they are
+// closed, and reading stops at a byte cap, so memory tracks the useful part of the page, not its raw size.
+public final class HtmlStream {
+  private static final Set<String> DROPPED_TAGS = Set.of("script", "style", "noscript");
+
+  private HtmlStream() {}
+
+  public record Parsed(Document document, long bytesRead, boolean truncated) {}
+
+  public static Parsed parse(InputStream input, Charset charset, String baseUri, long maxBytes) throws IOException {
+    CappedInputStream capped = new CappedInputStream(input, maxBytes);
+    try (StreamParser parser = new StreamParser(Parser.htmlParser())) {
+      parser.parse(new InputStreamReader(capped, charset), baseUri);
+      Iterator<Element> elements = parser.iterator();
+      while (elements.hasNext()) {
+        Element element = elements.next();
+        if (DROPPED_TAGS.contains(element.normalName())) {
+          element.remove();
+        }
+      }
+      Document document = parser.document();
+      document.outputSettings().prettyPrint(false);
+      return new Parsed(document, capped.count, capped.truncated);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static final class CappedInputStream extends FilterInputStream {
+    private final long maxBytes;
+    private long count;
+    private boolean truncated;
+    private boolean peeked;
+
+    private CappedInputStream(InputStream input, long maxBytes) {
+      super(input);
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (atCap()) {
+        return -1;
+      }
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (atCap()) {
+        return -1;
+      }
+      int read = super.read(buffer, offset, (int) Math.min(length, maxBytes - count));
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+    // At the cap, one more byte tells a body of exactly maxBytes apart from a longer one.
+    private boolean atCap() throws IOException {
+      if (count < maxBytes) {
+        return false;
+      }
+      if (!peeked) {
+        peeked = true;
+        truncated = in.read() >= 0;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,253 @@
+package com.declutter.scrape;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+// Size-bounded, least-recently-used response cache. Each entry is a body file plus a properties file holding
+// the validators and freshness lifetime; the body file's modification time doubles as the LRU clock.
+public class HttpCache {
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+  private static final String BODY_SUFFIX = ".body";
+  private static final String META_SUFFIX = ".meta";
+
+  private final Path directory;
+  private final long maxBytes;
+  private long totalBytes = -1;
+
+  public HttpCache(Path directory) {
+    this(directory, DEFAULT_MAX_BYTES);
+  }
+
+  public HttpCache(Path directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  public record Entry(String url, String body, String etag, String lastModified, Instant expiresAt) {
+    public boolean isFresh() {
+      return expiresAt != null && Instant.now().isBefore(expiresAt);
+    }
+
+    public boolean canRevalidate() {
+      return etag != null || lastModified != null;
+    }
+  }
+
+  public synchronized Optional<Entry> get(String url) {
+    Path body = bodyPath(url);
+    Path meta = metaPath(url);
+    if (!Files.exists(body) || !Files.exists(meta)) {
+      return Optional.empty();
+    }
+    try {
+      Properties props = new Properties();
+      try (InputStream input = Files.newInputStream(meta)) {
+        props.load(input);
+      }
+      if (!url.equals(props.getProperty("url"))) {
+        return Optional.empty();
+      }
+      String expires = props.getProperty("expiresAt");
+      Entry entry = new Entry(
+          url,
+          Files.readString(body, StandardCharsets.UTF_8),
+          props.getProperty("etag"),
+          props.getProperty("lastModified"),
+          expires == null ? null : Instant.ofEpochMilli(Long.parseLong(expires)));
+      Files.setLastModifiedTime(body, FileTime.from(Instant.now()));
+      return Optional.of(entry);
+    } catch (IOException | NumberFormatException e) {
+      remove(url);
+      return Optional.empty();
+    }
+  }
+
+  public synchronized void put(String url, String body, HttpHeaders headers) {
+    if (!isStorable(headers)) {
+      remove(url);
+      return;
+    }
+    Properties props = new Properties();
+    props.setProperty("url", url);
+    headers.firstValue("ETag").ifPresent(v -> props.setProperty("etag", v));
+    headers.firstValue("Last-Modified").ifPresent(v -> props.setProperty("lastModified", v));
+    Instant expiresAt = expiresAt(headers);
+    if (expiresAt != null) {
+      props.setProperty("expiresAt", String.valueOf(expiresAt.toEpochMilli()));
+    }
+    try {
+      Files.createDirectories(directory);
+      long total = currentSize();
+      Path bodyPath = bodyPath(url);
+      long previous = Files.exists(bodyPath) ? Files.size(bodyPath) : 0;
+      Files.writeString(bodyPath, body, StandardCharsets.UTF_8);
+      try (OutputStream output = Files.newOutputStream(metaPath(url))) {
+        props.store(output, null);
+      }
+      totalBytes = total - previous + Files.size(bodyPath);
+      evictIfNeeded();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write HTTP cache entry for " + url, e);
+    }
+  }
+
+  // A 304 carries fresh freshness headers (and possibly new validators) for the body we already hold.
+  public synchronized void refresh(Entry entry, HttpHeaders headers) {
+    String etag = headers.firstValue("ETag").orElse(entry.etag());
+    String lastModified = headers.firstValue("Last-Modified").orElse(entry.lastModified());
+    HttpHeaders merged = HttpHeaders.of(
+        Map.of(
+            "ETag", etag == null ? List.of() : List.of(etag),
+            "Last-Modified", lastModified == null ? List.of() : List.of(lastModified),
+            "Cache-Control", headers.allValues("Cache-Control"),
+            "Expires", headers.allValues("Expires")),
+        (name, value) -> true);
+    put(entry.url(), entry.body(), merged);
+  }
+
+  public synchronized void remove(String url) {
+    try {
+      Path body = bodyPath(url);
+      if (totalBytes >= 0 && Files.exists(body)) {
+        totalBytes -= Files.size(body);
+      }
+      Files.deleteIfExists(body);
+      Files.deleteIfExists(metaPath(url));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to remove HTTP cache entry for " + url, e);
+    }
+  }
+
+  private boolean isStorable(HttpHeaders headers) {
+    for (String directive : directives(headers)) {
+      if (directive.equals("no-store")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Instant expiresAt(HttpHeaders headers) {
+    Instant now = Instant.now();
+    for (String directive : directives(headers)) {
+      if (directive.equals("no-cache")) {
+        return null;
+      }
+    }
+    for (String directive : directives(headers)) {
+      if (directive.startsWith("max-age=")) {
+        try {
+          return now.plusSeconds(Long.parseLong(directive.substring("max-age=".length())));
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      }
+    }
+    Optional<String> expires = headers.firstValue("Expires");
+    if (expires.isPresent()) {
+      try {
+        return ZonedDateTime.parse(expires.get(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+      } catch (DateTimeParseException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private static List<String> directives(HttpHeaders headers) {
+    List<String> result = new ArrayList<>();
+    for (String value : headers.allValues("Cache-Control")) {
+      for (String part : value.split(",")) {
+        String directive = part.trim().toLowerCase(Locale.ROOT);
+        if (!directive.isEmpty()) {
+          result.add(directive);
+        }
+      }
+    }
+    return result;
+  }
+
+  private long currentSize() throws IOException {
+    if (totalBytes < 0) {
+      totalBytes = 0;
+      for (Path body : bodies()) {
+        totalBytes += Files.size(body);
+      }
+    }
+    return totalBytes;
+  }
+
+  private void evictIfNeeded() throws IOException {
+    if (totalBytes <= maxBytes) {
+      return;
+    }
+    List<Path> bodies = bodies();
+    bodies.sort(Comparator.comparing(HttpCache::lastModified));
+    for (Path body : bodies) {
+      if (totalBytes <= maxBytes) {
+        break;
+      }
+      long size = Files.size(body);
+      String name = body.getFileName().toString();
+      Files.deleteIfExists(body);
+      Files.deleteIfExists(body.resolveSibling(name.substring(0, name.length() - BODY_SUFFIX.length()) + META_SUFFIX));
+      totalBytes -= size;
+    }
+  }
+
+  private List<Path> bodies() throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return new ArrayList<>();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return new ArrayList<>(files.filter(p -> p.getFileName().toString().endsWith(BODY_SUFFIX)).toList());
+    }
+  }
+
+  private static FileTime lastModified(Path path) {
+    try {
+      return Files.getLastModifiedTime(path);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  private Path bodyPath(String url) {
+    return directory.resolve(key(url) + BODY_SUFFIX);
+  }
+
+  private Path metaPath(String url) {
+    return directory.resolve(key(url) + META_SUFFIX);
+  }
+
+  private static String key(String url) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+package com.declutter.scrape;
+
+import com.declutter.util.ConsoleUtil;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+public class HttpFetcher {
+  public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+  public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+  public static final int DEFAULT_MAX_CONCURRENCY = 16;
+  public static final long DEFAULT_MAX_PAGE_BYTES = 8L * 1024 * 1024;
+
+  private final String userAgent;
+  private final Settings settings;
+  private final Semaphore permits;
+  private final HttpCache cache;
+  private final HostScheduler scheduler;
+  private HttpClient client;
+  private ExecutorService executor;
+
+  public HttpFetcher(String userAgent) {
+    this(userAgent, Settings.defaults(), null, new HostScheduler());
+  }
+
+  public HttpFetcher(String userAgent, Settings settings, HttpCache cache, HostScheduler scheduler) {
+    if (settings.maxConcurrency() < 1) {
+      throw new IllegalArgumentException("max concurrency must be at least 1");
+    }
+    if (settings.maxPageBytes() < 1) {
+      throw new IllegalArgumentException("max page bytes must be positive");
+    }
+    this.userAgent = userAgent;
+    this.settings = settings;
+    this.permits = new Semaphore(settings.maxConcurrency());
+    this.cache = cache;
+    this.scheduler = scheduler;
+  }
+
+  public record Settings(Duration connectTimeout, Duration readTimeout, int maxConcurrency, long maxPageBytes) {
+    public static Settings defaults() {
+      return new Settings(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_MAX_CONCURRENCY, DEFAULT_MAX_PAGE_BYTES);
+    }
+  }
+
+  public enum CacheStatus { MISS, HIT, REVALIDATED }
+
+  // wireBytes is what crossed the network, decodedBytes what the parser read after decompression.
+  // retryAfter is only set when a 429 or 503 came back with a usable Retry-After header.
+  public record Result(Document document, CacheStatus cacheStatus, long wireBytes, long decodedBytes,
+                       int statusCode, Duration retryAfter) {
+    public boolean fromCache() {
+      return cacheStatus != CacheStatus.MISS;
+    }
+
+    public boolean throttled() {
+      return statusCode == 429 || statusCode == 503;
+    }
+  }
+
+  public Result fetch(String url) throws IOException, InterruptedException {
+    Optional<HttpCache.Entry> cached = cache == null ? Optional.empty() : cache.get(url);
+    if (cached.isPresent() && cached.get().isFresh()) {
+      return new Result(parseCached(cached.get()), CacheStatus.HIT, 0, 0, 200, null);
+    }
+    Result result = send(url, cached);
+    // One retry once the host's Retry-After has passed; a longer wait is left to the caller's fallback.
+    if (result.throttled()) {
+      Duration delay = backOff(url, result);
+      if (delay.compareTo(HostScheduler.MAX_RETRY_AFTER) <= 0) {
+        ConsoleUtil.warn("Host answered " + result.statusCode() + "; retrying in " + delay.toSeconds() + " s");
+        result = send(url, cached);
+        if (result.throttled()) {
+          backOff(url, result);
+        }
+      }
+    }
+    return result;
+  }
+
+  private Result send(String url, Optional<HttpCache.Entry> cached) throws IOException, InterruptedException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+        .GET()
+        .timeout(settings.readTimeout())
+        .header("User-Agent", userAgent)
+        .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+        .header("Accept-Language", "en-US,en;q=0.9")
+        .header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING);
+    cached.filter(HttpCache.Entry::canRevalidate).ifPresent(entry -> {
+      if (entry.etag() != null) {
+        builder.header("If-None-Match", entry.etag());
+      }
+      if (entry.lastModified() != null) {
+        builder.header("If-Modified-Since", entry.lastModified());
+      }
+    });
+    HttpClient httpClient = client();
+    scheduler.acquire(url);
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      scheduler.release(url);
+      throw e;
+    }
+    try {
+      HttpResponse<InputStream> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+      ContentDecoding.CountingInputStream wire = new ContentDecoding.CountingInputStream(response.body());
+      try (wire) {
+        if (response.statusCode() == 304 && cached.isPresent()) {
+          updateCache(() -> cache.refresh(cached.get(), response.headers()));
+          return new Result(parseCached(cached.get()), CacheStatus.REVALIDATED, 0, 0, 304, null);
+        }
+        if (response.statusCode() >= 400) {
+          return new Result(Document.createShell(url), CacheStatus.MISS, 0, 0,
+              response.statusCode(), retryAfter(response.headers()));
+        }
+        InputStream body = ContentDecoding.decode(wire, response.headers().firstValue("Content-Encoding").orElse(null));
+        HtmlStream.Parsed parsed = HtmlStream.parse(body, charset(response.headers()), url, settings.maxPageBytes());
+        if (parsed.truncated()) {
+          ConsoleUtil.warn("Page exceeded " + settings.maxPageBytes() + " bytes; parsed the first part only");
+        }
+        if (cache != null && response.statusCode() == 200) {
+          // A cut-off page is not kept, and an older copy goes too, so it is not revalidated into being served.
+          updateCache(parsed.truncated()
+              ? () -> cache.remove(url)
+              : () -> cache.put(url, parsed.document().outerHtml(), response.headers()));
+        }
+        return new Result(parsed.document(), CacheStatus.MISS, wire.count(), parsed.bytesRead(),
+            response.statusCode(), null);
+      }
+    } finally {
+      permits.release();
+      scheduler.release(url);
+    }
+  }
+
+  public interface BodyReader<T> {
+    T read(InputStream body) throws IOException;
+  }
+
+  // For non-HTML resources such as sitemaps and feeds: the decoded body is handed to the reader while the
+  // host and connection permits are held. Not cached, and any error status is an IOException.
+  public <T> T fetchRaw(String url, BodyReader<T> reader) throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+        .GET()
+        .timeout(settings.readTimeout())
+        .header("User-Agent", userAgent)
+        .header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING)
+        .build();
+    HttpClient httpClient = client();
+    scheduler.acquire(url);
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      scheduler.release(url);
+      throw e;
+    }
+    try {
+      HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+      try (InputStream wire = response.body()) {
+        if (response.statusCode() >= 400) {
+          Duration retryAfter = retryAfter(response.headers());
+          if (response.statusCode() == 429 || response.statusCode() == 503) {
+            scheduler.backoff(url, retryAfter == null ? HostScheduler.DEFAULT_BACKOFF : retryAfter);
+          }
+          throw new IOException("HTTP " + response.statusCode() + " for " + url);
+        }
+        return reader.read(ContentDecoding.decode(wire, response.headers().firstValue("Content-Encoding").orElse(null)));
+      }
+    } finally {
+      permits.release();
+      scheduler.release(url);
+    }
+  }
+
+  private Duration backOff(String url, Result result) {
+    Duration delay = result.retryAfter() == null ? HostScheduler.DEFAULT_BACKOFF : result.retryAfter();
+    scheduler.backoff(url, delay);
+    return delay;
+  }
+
+  public HostScheduler scheduler() {
+    return scheduler;
+  }
+
+  private static Document parseCached(HttpCache.Entry entry) {
+    return Jsoup.parse(entry.body(), entry.url());
+  }
+
+  // Retry-After is either a number of seconds or an HTTP date.
+  private static Duration retryAfter(HttpHeaders headers) {
+    String value = headers.firstValue("Retry-After").map(String::trim).orElse("");
+    if (value.isEmpty()) {
+      return null;
+    }
+    try {
+      return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+    } catch (NumberFormatException e) {
+      try {
+        Duration until = Duration.between(Instant.now(),
+            ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+        return until.isNegative() ? Duration.ZERO : until;
+      } catch (DateTimeParseException ignored) {
+        return null;
+      }
+    }
+  }
+
+  private static Charset charset(HttpHeaders headers) {
+    String contentType = headers.firstValue("Content-Type").orElse("");
+    for (String param : contentType.split(";")) {
+      String trimmed = param.trim();
+      if (trimmed.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+        String name = trimmed.substring("charset=".length()).replace("\"", "").trim();
+        try {
+          return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+          break;
+        }
+      }
+    }
+    return StandardCharsets.UTF_8;
+  }
+
+  // Drops a cached page, e.g. one that turned out to need a browser render, so a later hit cannot skip that check.
+  public void forget(String url) {
+    if (cache != null) {
+      updateCache(() -> cache.remove(url));
+    }
+  }
+
+  private void updateCache(Runnable update) {
+    try {
+      update.run();
+    } catch (UncheckedIOException e) {
+      ConsoleUtil.warn("HTTP cache update failed: " + e.getMessage());
+    }
+  }
+
+  // One client for the lifetime of the fetcher so connections (and HTTP/2 streams) are reused per host.
+  private synchronized HttpClient client() {
+    if (client == null) {
+      executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("declutter-http-", 0).factory());
+      client = HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_2)
+          .followRedirects(HttpClient.Redirect.NORMAL)
+          .connectTimeout(settings.connectTimeout())
+          .executor(executor)
+          .build();
+    }
+    return client;
+  }
+
+  public synchronized void close() {
+    if (client != null) {
+      client.close();
+      client = null;
+    }
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+}
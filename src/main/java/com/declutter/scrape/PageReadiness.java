@@ -0,0 +1,227 @@
+package com.declutter.scrape;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.TimeoutError;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class PageReadiness {
+  private static final String BINDING = "__declutterReady";
+  private static final String TIMEOUT = "timeout";
+
+  private final List<ReadyCondition> conditions;
+
+  public PageReadiness(List<ReadyCondition> conditions) {
+    if (conditions == null || conditions.isEmpty()) {
+      throw new IllegalArgumentException("at least one ready condition is required");
+    }
+    this.conditions = List.copyOf(conditions);
+  }
+
+  public static PageReadiness defaults() {
+    return new PageReadiness(List.of(
+        new ReadyCondition.NetworkQuiet(2, Duration.ofMillis(500), Duration.ofSeconds(30)),
+        new ReadyCondition.SelectorPresent("article p, main p, [role=main] p", Duration.ofSeconds(30))));
+  }
+
+  // Must be called before navigation so no request or DOM event is missed.
+  public Watch watch(Page page) {
+    return new Watch(page);
+  }
+
+  public record Result(String condition, long elapsedMs) {
+    public boolean timedOut() {
+      return TIMEOUT.equals(condition);
+    }
+  }
+
+  public final class Watch {
+    private final Page page;
+    private final long startNanos = System.nanoTime();
+    private final CompletableFuture<ReadyCondition> fired = new CompletableFuture<>();
+    private final Set<Request> inflight = ConcurrentHashMap.newKeySet();
+    private final long[] quietSince = new long[conditions.size()];
+
+    private Watch(Page page) {
+      this.page = page;
+      Arrays.fill(quietSince, startNanos);
+      if (conditions.stream().anyMatch(c -> c instanceof ReadyCondition.NetworkQuiet)) {
+        page.onRequest(this::requestStarted);
+        page.onRequestFinished(this::requestEnded);
+        page.onRequestFailed(this::requestEnded);
+      }
+      String script = domScript();
+      if (script != null) {
+        page.exposeBinding(BINDING, (source, args) -> {
+          signal(args);
+          return null;
+        });
+        page.addInitScript(script);
+      }
+    }
+
+    // Blocks until the first condition fires. Playwright dispatches page events while it waits,
+    // and the predicate is re-checked on every event, so nothing here sleeps or polls on a timer.
+    public Result await() {
+      long maxBudgetMs = conditions.stream().mapToLong(c -> c.budget().toMillis()).max().orElse(0);
+      try {
+        page.waitForCondition(this::ready, new Page.WaitForConditionOptions().setTimeout(maxBudgetMs));
+      } catch (TimeoutError e) {
+        return new Result(TIMEOUT, elapsedMs());
+      }
+      return new Result(fired.join().name(), elapsedMs());
+    }
+
+    private boolean ready() {
+      if (fired.isDone()) {
+        return true;
+      }
+      long now = System.nanoTime();
+      for (int i = 0; i < conditions.size(); i++) {
+        ReadyCondition condition = conditions.get(i);
+        if (condition instanceof ReadyCondition.NetworkQuiet quiet
+            && withinBudget(condition, now)
+            && quietSince[i] >= 0
+            && now - quietSince[i] >= quiet.idle().toNanos()) {
+          fired.complete(condition);
+          break;
+        }
+      }
+      return fired.isDone();
+    }
+
+    private void requestStarted(Request request) {
+      // A redirect hop is reported as a new request; the hop it replaces is no longer in flight.
+      Request previous = request.redirectedFrom();
+      if (previous != null) {
+        inflight.remove(previous);
+      }
+      inflight.add(request);
+      networkChanged();
+    }
+
+    private void requestEnded(Request request) {
+      if (inflight.remove(request)) {
+        networkChanged();
+      }
+    }
+
+    private synchronized void networkChanged() {
+      long now = System.nanoTime();
+      int current = inflight.size();
+      for (int i = 0; i < conditions.size(); i++) {
+        if (conditions.get(i) instanceof ReadyCondition.NetworkQuiet quiet) {
+          if (current > quiet.maxInflight()) {
+            quietSince[i] = -1;
+          } else if (quietSince[i] < 0) {
+            quietSince[i] = now;
+          }
+        }
+      }
+    }
+
+    private void signal(Object[] args) {
+      if (args.length == 0 || !(args[0] instanceof Number number)) {
+        return;
+      }
+      int index = number.intValue();
+      if (index < 0 || index >= conditions.size()) {
+        return;
+      }
+      ReadyCondition condition = conditions.get(index);
+      if (withinBudget(condition, System.nanoTime())) {
+        fired.complete(condition);
+      }
+    }
+
+    private boolean withinBudget(ReadyCondition condition, long now) {
+      return now - startNanos <= condition.budget().toNanos();
+    }
+
+    private long elapsedMs() {
+      return Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+    }
+  }
+
+  private String domScript() {
+    StringBuilder selectors = new StringBuilder();
+    StringBuilder predicates = new StringBuilder();
+    StringBuilder quiets = new StringBuilder();
+    for (int i = 0; i < conditions.size(); i++) {
+      switch (conditions.get(i)) {
+        case ReadyCondition.SelectorPresent selector ->
+            selectors.append('[').append(i).append(", ").append(jsString(selector.selector())).append("],");
+        case ReadyCondition.ScriptPredicate predicate ->
+            predicates.append('[').append(i).append(", () => (").append(predicate.expression()).append(")],");
+        case ReadyCondition.DomQuiet quiet ->
+            quiets.append('[').append(i).append(", ").append(quiet.quiet().toMillis()).append("],");
+        case ReadyCondition.NetworkQuiet ignored -> {
+        }
+      }
+    }
+    if (selectors.isEmpty() && predicates.isEmpty() && quiets.isEmpty()) {
+      return null;
+    }
+    return """
+        (() => {
+          if (window.top !== window) return;
+          const selectors = [%s];
+          const predicates = [%s];
+          const quiets = [%s];
+          const fired = new Set();
+          const fire = (index) => {
+            if (fired.has(index)) return;
+            fired.add(index);
+            try { window.%s(index); } catch (e) {}
+          };
+          const timers = new Map();
+          const armQuiet = () => {
+            for (const [index, ms] of quiets) {
+              clearTimeout(timers.get(index));
+              timers.set(index, setTimeout(() => fire(index), ms));
+            }
+          };
+          const check = () => {
+            for (const [index, selector] of selectors) {
+              try { if (document.querySelector(selector)) fire(index); } catch (e) {}
+            }
+            for (const [index, predicate] of predicates) {
+              try { if (predicate()) fire(index); } catch (e) {}
+            }
+          };
+          let loaded = document.readyState !== 'loading';
+          let scheduled = false;
+          new MutationObserver(() => {
+            if (loaded) armQuiet();
+            if (scheduled) return;
+            scheduled = true;
+            setTimeout(() => { scheduled = false; check(); }, 50);
+          }).observe(document, { childList: true, subtree: true, characterData: true, attributes: true });
+          const onReady = () => { loaded = true; armQuiet(); check(); };
+          if (loaded) onReady(); else document.addEventListener('DOMContentLoaded', onReady);
+        })();
+        """.formatted(selectors, predicates, quiets, BINDING);
+  }
+
+  private static String jsString(String value) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"' -> sb.append("\\\"");
+        case '\\' -> sb.append("\\\\");
+        case '\n' -> sb.append("\\n");
+        case '\r' -> sb.append("\\r");
+        case '\u2028' -> sb.append("\\u2028");
+        case '\u2029' -> sb.append("\\u2029");
+        default -> sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
@@ -0,0 +1,177 @@
+package com.declutter.scrape;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Finds the remaining pages of a paginated article and stitches their content onto the first page.
+// Pages are identified by a key of "URL without its page number" plus the number, so ?page=1 and the bare
+// article URL count as the same page. Numbered pagination links let several pages be fetched at once;
+// a bare rel=next or "Next" link is followed one page at a time. Following pages is opt-in (--max-pages).
+public final class Pagination {
+  public static final int DEFAULT_MAX_PAGES = 1;
+  // Not a bare "p=": WordPress uses ?p=123 for post ids, which would make every post a page of another.
+  private static final Pattern PAGE_PARAM = Pattern.compile("(?:page|pg|paged)=(\\d+)", Pattern.CASE_INSENSITIVE);
+  // "/page/3" or a bare "/3" (two digits at most, so numeric article ids are not mistaken for page numbers).
+  private static final Pattern PAGE_PATH = Pattern.compile("/(?:page/(\\d{1,3})|(\\d{1,2}))/?$");
+  private static final Pattern NEXT_TEXT = Pattern.compile("^(?:next(?: page)?|next\\s*[›»→>]|[›»→])$");
+  private static final String CONTAINERS =
+      "nav[aria-label*=pagination], .pagination, .pager, [class*=pagination], [class*=page-numbers]";
+  private static final String REPEATABLE =
+      "h1, h2, h3, h4, h5, h6, p, header, time, address, figcaption, [class*=byline], [class*=author]";
+  private static final int MAX_REPEATED_TEXT = 300;
+
+  private Pagination() {}
+
+  public static String key(String url) {
+    return family(url) + "#" + pageNumber(url);
+  }
+
+  // Pages following this one that are not in seen, in page order; seen is updated with what is returned.
+  // A listing page (several <article> elements) is not treated as a paginated article.
+  public static List<String> nextPages(Document document, String url, Set<String> seen, int limit) {
+    List<String> result = new ArrayList<>();
+    if (limit < 1 || document.select("article").size() > 1) {
+      return result;
+    }
+    String family = family(url);
+    TreeMap<Integer, String> numbered = new TreeMap<>();
+    String next = null;
+    for (Element link : document.select("a[href], link[rel=next][href]")) {
+      String href = link.absUrl("href");
+      if (href.isEmpty()) {
+        continue;
+      }
+      String text = link.text().trim().toLowerCase(Locale.ROOT);
+      boolean sameFamily = family(href).equals(family);
+      if (sameFamily && text.matches("\\d{1,3}")) {
+        numbered.putIfAbsent(Integer.parseInt(text), href);
+      } else if (next == null && sameFamily && (isRelNext(link) || NEXT_TEXT.matcher(text).matches())) {
+        next = href;
+      }
+    }
+    List<String> candidates = new ArrayList<>(numbered.values());
+    if (next != null) {
+      candidates.add(next);
+    }
+    Set<String> added = new HashSet<>();
+    for (String candidate : candidates) {
+      String key = key(candidate);
+      if (result.size() < limit && !seen.contains(key) && added.add(key)) {
+        result.add(candidate);
+      }
+    }
+    seen.addAll(added);
+    return result;
+  }
+
+  // Appends the main content of every later page to the first page's main content, in order. Pagination
+  // controls are dropped and short blocks already present (title, byline, dates) are not repeated.
+  public static ScrapedPage stitch(List<ScrapedPage> pages) {
+    ScrapedPage first = pages.getFirst();
+    first.document().select(CONTAINERS).remove();
+    Element target = contentRoot(first.document());
+    Set<String> seenBlocks = new HashSet<>();
+    rememberBlocks(target, seenBlocks);
+    for (ScrapedPage page : pages.subList(1, pages.size())) {
+      page.document().select(CONTAINERS).remove();
+      Element root = contentRoot(page.document());
+      if (root == null || root.text().isBlank()) {
+        continue;
+      }
+      for (Element block : root.select(REPEATABLE)) {
+        String text = block.text().trim();
+        if (!text.isEmpty() && text.length() <= MAX_REPEATED_TEXT && seenBlocks.contains(text)) {
+          block.remove();
+        }
+      }
+      rememberBlocks(root, seenBlocks);
+      // Relative links resolve against the page they came from, not the first page.
+      for (Element element : root.select("[href], [src]")) {
+        for (String attribute : List.of("href", "src")) {
+          String absolute = element.absUrl(attribute);
+          if (!absolute.isEmpty()) {
+            element.attr(attribute, absolute);
+          }
+        }
+      }
+      for (Node child : new ArrayList<>(root.childNodes())) {
+        target.appendChild(child);
+      }
+    }
+    return first;
+  }
+
+  private static void rememberBlocks(Element root, Set<String> seenBlocks) {
+    for (Element block : root.select(REPEATABLE)) {
+      String text = block.text().trim();
+      if (!text.isEmpty() && text.length() <= MAX_REPEATED_TEXT) {
+        seenBlocks.add(text);
+      }
+    }
+  }
+
+  private static Element contentRoot(Document document) {
+    Element best = null;
+    for (Element candidate : document.select("article, main, [role=main]")) {
+      if (best == null || candidate.text().length() > best.text().length()) {
+        best = candidate;
+      }
+    }
+    return best != null ? best : document.body();
+  }
+
+  private static boolean isRelNext(Element link) {
+    for (String rel : link.attr("rel").toLowerCase(Locale.ROOT).split("\\s+")) {
+      if (rel.equals("next")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String family(String url) {
+    String path = path(url);
+    StringBuilder query = new StringBuilder();
+    for (String param : query(url).split("&")) {
+      if (!param.isEmpty() && !PAGE_PARAM.matcher(param).matches()) {
+        query.append(query.isEmpty() ? "?" : "&").append(param);
+      }
+    }
+    path = PAGE_PATH.matcher(path).replaceFirst("");
+    return (path.endsWith("/") ? path.substring(0, path.length() - 1) : path) + query;
+  }
+
+  private static int pageNumber(String url) {
+    for (String param : query(url).split("&")) {
+      Matcher matcher = PAGE_PARAM.matcher(param);
+      if (matcher.matches()) {
+        return Integer.parseInt(matcher.group(1));
+      }
+    }
+    Matcher segment = PAGE_PATH.matcher(path(url));
+    if (!segment.find()) {
+      return 1;
+    }
+    return Integer.parseInt(segment.group(1) != null ? segment.group(1) : segment.group(2));
+  }
+
+  private static String path(String url) {
+    return url.replaceAll("[?#].*$", "");
+  }
+
+  private static String query(String url) {
+    String withoutFragment = url.replaceAll("#.*$", "");
+    int start = withoutFragment.indexOf('?');
+    return start < 0 ? "" : withoutFragment.substring(start + 1);
+  }
+}
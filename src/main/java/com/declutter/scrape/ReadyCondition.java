@@ -0,0 +1,42 @@
+package com.declutter.scrape;
+
+import java.time.Duration;
+
+// A signal that a rendered page is usable. Each condition only counts if it fires within its own budget.
+public sealed interface ReadyCondition {
+  String name();
+
+  Duration budget();
+
+  // At most maxInflight requests outstanding for a continuous idle window.
+  record NetworkQuiet(int maxInflight, Duration idle, Duration budget) implements ReadyCondition {
+    @Override
+    public String name() {
+      return "network-quiet";
+    }
+  }
+
+  // An element matching the CSS selector exists in the main frame.
+  record SelectorPresent(String selector, Duration budget) implements ReadyCondition {
+    @Override
+    public String name() {
+      return "selector";
+    }
+  }
+
+  // No DOM mutations in the main frame for the quiet window after DOMContentLoaded.
+  record DomQuiet(Duration quiet, Duration budget) implements ReadyCondition {
+    @Override
+    public String name() {
+      return "dom-quiet";
+    }
+  }
+
+  // A JavaScript expression that evaluates truthy in the main frame, re-checked as the DOM changes.
+  record ScriptPredicate(String expression, Duration budget) implements ReadyCondition {
+    @Override
+    public String name() {
+      return "script";
+    }
+  }
+}
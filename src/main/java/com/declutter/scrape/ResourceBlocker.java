@@ -0,0 +1,157 @@
+package com.declutter.scrape;
+
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.Route;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Aborts requests whose bytes never reach page.content(). Blocking a request leaves the element and its
+// src/href in the DOM, so image URLs are still there for the Markdown conversion.
+public class ResourceBlocker {
+  public static final Set<String> DEFAULT_BLOCKED_TYPES = Set.of("image", "media", "font");
+  public static final List<String> DEFAULT_BLOCKED_DOMAINS = List.of(
+      "doubleclick.net",
+      "googlesyndication.com",
+      "googleadservices.com",
+      "google-analytics.com",
+      "googletagmanager.com",
+      "googletagservices.com",
+      "amazon-adsystem.com",
+      "adnxs.com",
+      "criteo.com",
+      "pubmatic.com",
+      "rubiconproject.com",
+      "moatads.com",
+      "taboola.com",
+      "outbrain.com",
+      "scorecardresearch.com",
+      "quantserve.com",
+      "chartbeat.com",
+      "hotjar.com",
+      "segment.io",
+      "newrelic.com",
+      "nr-data.net",
+      "connect.facebook.net");
+  private static final String TRACKER = "tracker";
+  // Rough median transfer sizes per request; aborted responses are never seen, so savings are an estimate.
+  private static final Map<String, Long> ESTIMATED_BYTES = Map.of(
+      "image", 60_000L,
+      "media", 500_000L,
+      "font", 40_000L,
+      TRACKER, 25_000L);
+
+  private final Set<String> blockedTypes;
+  private final List<String> blockedDomains;
+
+  public ResourceBlocker(Set<String> blockedTypes, List<String> blockedDomains) {
+    this.blockedTypes = Set.copyOf(blockedTypes);
+    this.blockedDomains = blockedDomains.stream().map(d -> d.toLowerCase(Locale.ROOT)).toList();
+  }
+
+  public static ResourceBlocker defaults() {
+    return new ResourceBlocker(DEFAULT_BLOCKED_TYPES, DEFAULT_BLOCKED_DOMAINS);
+  }
+
+  public static ResourceBlocker withExtraDomains(List<String> extraDomains) {
+    Set<String> domains = new LinkedHashSet<>(DEFAULT_BLOCKED_DOMAINS);
+    domains.addAll(extraDomains);
+    return new ResourceBlocker(DEFAULT_BLOCKED_TYPES, new ArrayList<>(domains));
+  }
+
+  public static ResourceBlocker disabled() {
+    return new ResourceBlocker(Set.of(), List.of());
+  }
+
+  public Stats install(BrowserContext context, String pageUrl) {
+    Stats stats = new Stats();
+    if (blockedTypes.isEmpty() && blockedDomains.isEmpty()) {
+      return stats;
+    }
+    String pageHost = host(pageUrl);
+    context.route("**/*", route -> handle(route, pageHost, stats));
+    return stats;
+  }
+
+  private void handle(Route route, String pageHost, Stats stats) {
+    Request request = route.request();
+    String type = request.resourceType();
+    if (blockedTypes.contains(type)) {
+      stats.record(type);
+      route.abort("blockedbyclient");
+      return;
+    }
+    String host = host(request.url());
+    if (!isSameSite(host, pageHost) && isBlockedDomain(host)) {
+      stats.record(TRACKER);
+      route.abort("blockedbyclient");
+      return;
+    }
+    route.fallback();
+  }
+
+  private boolean isBlockedDomain(String host) {
+    for (String domain : blockedDomains) {
+      if (host.equals(domain) || host.endsWith("." + domain)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSameSite(String host, String pageHost) {
+    if (host.isEmpty() || pageHost.isEmpty()) {
+      return false;
+    }
+    return host.equals(pageHost) || host.endsWith("." + pageHost) || pageHost.endsWith("." + host);
+  }
+
+  private static String host(String url) {
+    try {
+      String host = URI.create(url).getHost();
+      return host == null ? "" : host.toLowerCase(Locale.ROOT);
+    } catch (IllegalArgumentException e) {
+      return "";
+    }
+  }
+
+  public static final class Stats {
+    private final Map<String, Integer> blocked = new ConcurrentHashMap<>();
+
+    private void record(String category) {
+      blocked.merge(category, 1, Integer::sum);
+    }
+
+    public int blockedRequests() {
+      return blocked.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public long estimatedBytesSaved() {
+      return blocked.entrySet().stream()
+          .mapToLong(e -> ESTIMATED_BYTES.getOrDefault(e.getKey(), 0L) * e.getValue())
+          .sum();
+    }
+
+    public String summary() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("Blocked ").append(blockedRequests()).append(" requests");
+      if (!blocked.isEmpty()) {
+        sb.append(" (");
+        sb.append(String.join(", ", blocked.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .map(e -> e.getKey() + " " + e.getValue())
+            .toList()));
+        sb.append(")");
+      }
+      sb.append(", ~").append(estimatedBytesSaved() / 1024).append(" KB saved");
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.declutter.scrape;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+// One parsed, pre-cleaned DOM that travels from the fetch through usability scoring to Markdown conversion,
+// so the page is parsed exactly once whichever path produced it.
+public record ScrapedPage(String url, Document document) {
+  private static final String NON_CONTENT = "script, style, iframe, object, embed, noscript";
+
+  public static ScrapedPage fromHtml(String url, String html) {
+    return fromDocument(url, Jsoup.parse(html == null ? "" : html, url));
+  }
+
+  public static ScrapedPage fromDocument(String url, Document document) {
+    document.select(NON_CONTENT).remove();
+    return new ScrapedPage(url, document);
+  }
+
+  public String text() {
+    return document.body() == null ? "" : document.body().text();
+  }
+}
@@ -11,117 +11,114 @@ import com.microsoft.playwright.options.Margin;
 import com.microsoft.playwright.options.WaitUntilState;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class Scraper {
   private static final Random RANDOM = new Random();
   private static final double DEFAULT_TIMEOUT_MS = 30000;
   private static final String USER_AGENT =
       "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/131.0.0.0 Safari/537.36";
-  private static final String STEALTH_SCRIPT = """
-      Object.defineProperty(navigator, 'webdriver', { get: () => undefined });
-      window.chrome = { runtime: {} };
-      const originalQuery = window.navigator.permissions.query;
-      window.navigator.permissions.query = (parameters) =>
-        parameters.name === 'notifications'
-          ? Promise.resolve({ state: Notification.permission })
-          : originalQuery(parameters);
-      Object.defineProperty(navigator, 'plugins', {
-        get: () => [
-          {
-            0: { type: 'application/x-google-chrome-pdf', suffixes: 'pdf', description: 'Portable Document Format', enabledPlugin: Plugin },
-            description: 'Portable Document Format',
-            filename: 'internal-pdf-viewer',
-            length: 1,
-            name: 'Chrome PDF Plugin',
-          },
-          {
-            0: { type: 'application/pdf', suffixes: 'pdf', description: '', enabledPlugin: Plugin },
-            description: '',
-            filename: 'mhjfbmdgcfjbbpaeojofohoefgiehjai',
-            length: 1,
-            name: 'Chrome PDF Viewer',
-          },
-          {
-            0: { type: 'application/x-nacl', suffixes: '', description: 'Native Client Executable', enabledPlugin: Plugin },
-            1: { type: 'application/x-pnacl', suffixes: '', description: 'Portable Native Client Executable', enabledPlugin: Plugin },
-            description: '',
-            filename: 'internal-nacl-plugin',
-            length: 2,
-            name: 'Native Client',
-          },
-        ],
-      });
-      Object.defineProperty(navigator, 'languages', { get: () => ['en-US', 'en'] });
-      const originalToString = Function.prototype.toString;
-      Function.prototype.toString = function () {
-        if (this === window.navigator.permissions.query) {
-          return 'function query() { [native code] }';
+  private static final String CAPTCHA_MARKUP = "[class*=captcha], [id*=captcha], [data-sitekey]";
+  private final HttpFetcher httpFetcher;
+  private final int browserWorkers;
+  private final PageReadiness readiness;
+  private final ResourceBlocker resourceBlocker;
+  private final HostStrategy hostStrategy;
+  private final StealthPolicy stealthPolicy;
+  private final boolean connectToDaemon;
+  private BrowserPool browserPool;
+
+  public Scraper() {
+    this(new HttpFetcher(USER_AGENT));
+  }
+
+  public Scraper(HttpFetcher httpFetcher) {
+    this(httpFetcher, BrowserPool.DEFAULT_SIZE);
+  }
+
+  public Scraper(HttpFetcher httpFetcher, int browserWorkers) {
+    this(httpFetcher, browserWorkers, PageReadiness.defaults(), ResourceBlocker.defaults(), HostStrategy.inMemory(),
+        StealthPolicy.defaults(), true);
+  }
+
+  public Scraper(HttpFetcher httpFetcher, int browserWorkers, PageReadiness readiness,
+                 ResourceBlocker resourceBlocker, HostStrategy hostStrategy, StealthPolicy stealthPolicy,
+                 boolean connectToDaemon) {
+    this.httpFetcher = httpFetcher;
+    this.browserWorkers = browserWorkers;
+    this.readiness = readiness;
+    this.resourceBlocker = resourceBlocker;
+    this.hostStrategy = hostStrategy;
+    this.stealthPolicy = stealthPolicy;
+    this.connectToDaemon = connectToDaemon;
+  }
+
+  public static String userAgent() {
+    return USER_AGENT;
+  }
+
+  public synchronized void initialize(String browserPath) {
+    if (browserPool != null) {
+      return;
+    }
+    BrowserPool pool = new BrowserPool(browserWorkers, playwright -> launch(playwright, browserPath), this::newContext);
+    try {
+      pool.start();
+    } catch (RuntimeException e) {
+      pool.close();
+      throw e;
+    }
+    browserPool = pool;
+  }
+
+  // Prefers a running browser daemon, which turns a cold Chrome launch into a context creation.
+  private Browser launch(Playwright playwright, String browserPath) {
+    if (connectToDaemon) {
+      Optional<String> endpoint = BrowserDaemon.endpoint();
+      if (endpoint.isPresent()) {
+        try {
+          Browser browser = playwright.chromium().connectOverCDP(endpoint.get(),
+              new BrowserType.ConnectOverCDPOptions().setTimeout(BrowserDaemon.CONNECT_TIMEOUT_MS));
+          ConsoleUtil.ok("Connected to browser daemon at " + endpoint.get());
+          return browser;
+        } catch (RuntimeException e) {
+          ConsoleUtil.warn("Browser daemon at " + endpoint.get() + " did not answer. Launching a browser.");
         }
-        return originalToString.call(this);
-      };
-      Object.defineProperty(navigator, 'platform', { get: () => 'Win32' });
-      Object.defineProperty(navigator, 'hardwareConcurrency', { get: () => 8 });
-      Object.defineProperty(navigator, 'deviceMemory', { get: () => 8 });
-      const originalContentWindow = Object.getOwnPropertyDescriptor(HTMLIFrameElement.prototype, 'contentWindow');
-      if (originalContentWindow) {
-        Object.defineProperty(HTMLIFrameElement.prototype, 'contentWindow', {
-          get: function () {
-            const win = originalContentWindow.get?.call(this);
-            if (win) {
-              try { win.navigator.webdriver = false; } catch {}
-            }
-            return win;
-          },
-        });
       }
-      let mouseX = 0;
-      let mouseY = 0;
-      const updateMousePosition = () => {
-        mouseX += (Math.random() - 0.5) * 10;
-        mouseY += (Math.random() - 0.5) * 10;
-        mouseX = Math.max(0, Math.min(window.innerWidth, mouseX));
-        mouseY = Math.max(0, Math.min(window.innerHeight, mouseY));
-      };
-      setInterval(updateMousePosition, 100);
-      """;
-  private Playwright playwright;
-  private Browser browser;
-
-  public void initialize(String browserPath) {
-    if (browser != null) {
-      return;
     }
-    playwright = Playwright.create();
+    return playwright.chromium().launch(launchOptions(browserPath, List.of()));
+  }
+
+  static BrowserType.LaunchOptions launchOptions(String browserPath, List<String> extraArgs) {
+    List<String> args = new ArrayList<>(List.of(
+        "--no-sandbox",
+        "--disable-setuid-sandbox",
+        "--disable-blink-features=AutomationControlled",
+        "--disable-infobars",
+        "--window-size=1920,1080",
+        "--disable-web-security",
+        "--disable-features=IsolateOrigins,site-per-process",
+        "--disable-dev-shm-usage",
+        "--disable-accelerated-2d-canvas",
+        "--no-first-run",
+        "--no-zygote",
+        "--disable-gpu",
+        "--lang=en-US,en;q=0.9"
+    ));
+    args.addAll(extraArgs);
     BrowserType.LaunchOptions options = new BrowserType.LaunchOptions()
         .setHeadless(true)
-        .setArgs(List.of(
-            "--no-sandbox",
-            "--disable-setuid-sandbox",
-            "--disable-blink-features=AutomationControlled",
-            "--disable-infobars",
-            "--window-size=1920,1080",
-            "--disable-web-security",
-            "--disable-features=IsolateOrigins,site-per-process",
-            "--disable-dev-shm-usage",
-            "--disable-accelerated-2d-canvas",
-            "--no-first-run",
-            "--no-zygote",
-            "--disable-gpu",
-            "--lang=en-US,en;q=0.9"
-        ))
+        .setArgs(args)
         .setIgnoreDefaultArgs(List.of("--enable-automation"))
         .setTimeout(DEFAULT_TIMEOUT_MS);
     if (browserPath != null && !browserPath.isBlank()) {
@@ -129,44 +126,68 @@ public class Scraper {
     } else {
       options.setChannel("chrome");
     }
-    browser = playwright.chromium().launch(options);
+    return options;
   }
 
-  public boolean isInitialized() {
-    return browser != null;
+  public synchronized boolean isInitialized() {
+    return browserPool != null;
   }
 
-  public String scrapePage(String url) {
-    ensureInitialized();
-    try (BrowserContext context = newContext()) {
-      Page page = context.newPage();
-      ConsoleUtil.ok("Starting Page fetch");
-      page.navigate(url, new Page.NavigateOptions().setWaitUntil(WaitUntilState.DOMCONTENTLOADED));
-      waitForNetworkIdle2(page, 2, 500, (int) DEFAULT_TIMEOUT_MS);
-      ConsoleUtil.ok("Network idle completed");
+  public HostScheduler hostScheduler() {
+    return httpFetcher.scheduler();
+  }
 
-      randomDelay(500, 1500);
-      page.mouse().move(RANDOM.nextInt(1000), RANDOM.nextInt(800));
-      randomDelay(300, 800);
-      randomScroll(page);
-      randomDelay(500, 1000);
-      ConsoleUtil.ok("Final random delay completed");
-      return page.content();
+  // A forced browser render. Hosts already known to serve their content as static HTML are rendered with
+  // JavaScript off, which skips script execution and the wait for client-side rendering.
+  public ScrapedPage scrapePage(String url) {
+    if (knownOutcome(url).filter(HostStrategy.Outcome::staticHtml).isPresent()) {
+      ScrapedPage page = gated(url, () -> renderStatic(url));
+      if (isLikelyUsable(page)) {
+        learn(url, HostStrategy.Outcome.JS_NOT_NEEDED);
+        return page;
+      }
+      ConsoleUtil.warn("Render without JavaScript returned low-signal content. Rendering with JavaScript.");
     }
+    ScrapedPage page = gated(url, () -> render(url));
+    if (!isLikelyUsable(page)) {
+      learn(url, HostStrategy.Outcome.BLOCKED);
+    }
+    return page;
   }
 
-  public String scrapePage(String url, boolean fastMode) {
+  public ScrapedPage scrapePage(String url, boolean fastMode) {
     if (!fastMode) {
       return scrapePage(url);
     }
+    Optional<HostStrategy.Outcome> known = knownOutcome(url);
+    if (known.filter(HostStrategy.Outcome::skipsFastFetch).isPresent()) {
+      ConsoleUtil.ok("Skipping fast fetch: " + HostScheduler.hostOf(url) + " is known as " + known.get().id());
+      return renderAndLearn(url);
+    }
     ConsoleUtil.ok("Starting fast fetch");
     try {
-      String html = fetchWithHttp(url);
-      if (!isLikelyUsableHtml(html)) {
+      HttpFetcher.Result result = httpFetcher.fetch(url);
+      ScrapedPage page = ScrapedPage.fromDocument(url, result.document());
+      if (result.fromCache()) {
+        ConsoleUtil.ok("Served from HTTP cache (" + result.cacheStatus().name().toLowerCase() + ")");
+        return page;
+      }
+      if (result.wireBytes() > 0) {
+        ConsoleUtil.ok("Fetched " + result.decodedBytes() / 1024 + " KB (" + result.wireBytes() / 1024 + " KB on the wire)");
+      }
+      // Only a 2xx page is learned from: an error status (404, 429, 5xx) says something about this URL or this
+      // moment, not about how the host serves its pages.
+      if (result.statusCode() / 100 != 2) {
+        ConsoleUtil.warn("Fast fetch answered HTTP " + result.statusCode() + ". Falling back to browser render.");
+        return gated(url, () -> render(url));
+      }
+      if (!isLikelyUsable(page)) {
+        httpFetcher.forget(url);
         ConsoleUtil.warn("Fast fetch returned low-signal content. Falling back to browser render.");
-        return scrapePage(url);
+        return renderAndLearn(url);
       }
-      return html;
+      learn(url, HostStrategy.Outcome.FAST_OK);
+      return page;
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       ConsoleUtil.warn("Fast fetch interrupted. Falling back to browser render.");
@@ -177,10 +198,70 @@ public class Scraper {
     }
   }
 
-  public void printPdf(String htmlContent, String documentPath) {
-    ensureInitialized();
-    try (BrowserContext context = newContext()) {
+  private ScrapedPage renderAndLearn(String url) {
+    ScrapedPage page = gated(url, () -> render(url));
+    learn(url, isLikelyUsable(page) ? HostStrategy.Outcome.NEEDS_BROWSER : HostStrategy.Outcome.BLOCKED);
+    return page;
+  }
+
+  private ScrapedPage gated(String url, Supplier<ScrapedPage> render) {
+    HostScheduler scheduler = httpFetcher.scheduler();
+    try {
+      scheduler.acquire(url);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to contact " + HostScheduler.hostOf(url), e);
+    }
+    try {
+      return render.get();
+    } finally {
+      scheduler.release(url);
+    }
+  }
+
+  private ScrapedPage render(String url) {
+    try (BrowserPool.Lease lease = pool().lease()) {
+      ResourceBlocker.Stats blocked = resourceBlocker.install(lease.context(), url);
+      StealthProfile stealth = stealthPolicy.profileFor(url);
+      Page page = lease.context().newPage();
+      if (stealth.initScript() != null) {
+        page.addInitScript(stealth.initScript());
+      }
+      PageReadiness.Watch watch = readiness.watch(page);
+      ConsoleUtil.ok("Starting Page fetch");
+      page.navigate(url, new Page.NavigateOptions().setWaitUntil(WaitUntilState.DOMCONTENTLOADED));
+      PageReadiness.Result ready = watch.await();
+      if (ready.timedOut()) {
+        ConsoleUtil.warn("No ready condition fired after " + ready.elapsedMs() + " ms. Using the page as loaded.");
+      } else {
+        ConsoleUtil.ok("Page ready (" + ready.condition() + ") after " + ready.elapsedMs() + " ms");
+      }
+
+      humanize(page, stealth);
+      if (blocked.blockedRequests() > 0) {
+        ConsoleUtil.ok(blocked.summary());
+      }
+      return ScrapedPage.fromHtml(url, page.content());
+    }
+  }
+
+  private ScrapedPage renderStatic(String url) {
+    try (BrowserPool.Lease lease = pool().lease();
+         BrowserContext context = newContext(lease.context().browser(), false)) {
+      ResourceBlocker.Stats blocked = resourceBlocker.install(context, url);
       Page page = context.newPage();
+      ConsoleUtil.ok("Starting Page fetch without JavaScript");
+      page.navigate(url, new Page.NavigateOptions().setWaitUntil(WaitUntilState.LOAD));
+      if (blocked.blockedRequests() > 0) {
+        ConsoleUtil.ok(blocked.summary());
+      }
+      return ScrapedPage.fromHtml(url, page.content());
+    }
+  }
+
+  public void printPdf(String htmlContent, String documentPath) {
+    try (BrowserPool.Lease lease = pool().lease()) {
+      Page page = lease.context().newPage();
       page.setContent(htmlContent, new Page.SetContentOptions().setWaitUntil(WaitUntilState.NETWORKIDLE));
       page.pdf(new Page.PdfOptions()
           .setPath(Path.of(documentPath))
@@ -194,81 +275,53 @@ public class Scraper {
     }
   }
 
-  private BrowserContext newContext() {
+  private BrowserContext newContext(Browser browser) {
+    return newContext(browser, true);
+  }
+
+  private BrowserContext newContext(Browser browser, boolean javaScriptEnabled) {
     BrowserContext context = browser.newContext(new Browser.NewContextOptions()
         .setUserAgent(USER_AGENT)
-        .setViewportSize(1920, 1080));
+        .setViewportSize(1920, 1080)
+        .setJavaScriptEnabled(javaScriptEnabled));
 
     context.setDefaultNavigationTimeout(DEFAULT_TIMEOUT_MS);
     context.setDefaultTimeout(DEFAULT_TIMEOUT_MS);
-    context.addInitScript(STEALTH_SCRIPT);
     context.setExtraHTTPHeaders(defaultHeaders());
     return context;
   }
 
-  private String fetchWithHttp(String url) throws IOException, InterruptedException {
-    HttpClient client = HttpClient.newBuilder()
-        .followRedirects(HttpClient.Redirect.NORMAL)
-        .connectTimeout(Duration.ofSeconds(10))
-        .build();
-    HttpRequest request = HttpRequest.newBuilder(URI.create(url))
-        .GET()
-        .header("User-Agent", USER_AGENT)
-        .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
-        .header("Accept-Language", "en-US,en;q=0.9")
-        .build();
-    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-    if (response.statusCode() >= 400) {
-      return "";
+  private Optional<HostStrategy.Outcome> knownOutcome(String url) {
+    try {
+      return hostStrategy.lookup(url);
+    } catch (UncheckedIOException e) {
+      ConsoleUtil.warn("Host strategy lookup failed: " + e.getMessage());
+      return Optional.empty();
     }
-    return response.body();
   }
 
-  private boolean isLikelyUsableHtml(String html) {
-    if (html == null || html.isBlank()) {
-      return false;
+  private void learn(String url, HostStrategy.Outcome outcome) {
+    try {
+      hostStrategy.record(url, outcome);
+    } catch (UncheckedIOException e) {
+      ConsoleUtil.warn("Host strategy update failed: " + e.getMessage());
     }
-    String lower = html.toLowerCase();
+  }
+
+  private boolean isLikelyUsable(ScrapedPage page) {
+    String text = page.text();
+    String lower = (page.document().title() + " " + text).toLowerCase();
     if (lower.contains("enable javascript") || lower.contains("access denied")
         || lower.contains("bot detection") || lower.contains("captcha")
         || lower.contains("are you human")) {
       return false;
     }
-    Document doc = Jsoup.parse(html);
-    doc.select("script, style, iframe, object, embed, noscript").remove();
-    String text = doc.body() == null ? "" : doc.body().text();
-    int textLength = text == null ? 0 : text.trim().length();
-    boolean hasStructure = doc.selectFirst("main, article, h1") != null;
-    return textLength >= 400 || hasStructure;
-  }
-
-  private void waitForNetworkIdle2(Page page, int maxInflight, int idleMs, int timeoutMs) {
-    AtomicInteger inflight = new AtomicInteger(0);
-    page.onRequest(request -> inflight.incrementAndGet());
-    page.onRequestFinished(request -> inflight.decrementAndGet());
-    page.onRequestFailed(request -> inflight.decrementAndGet());
-
-    long start = System.currentTimeMillis();
-    long idleStart = -1;
-    while (System.currentTimeMillis() - start < timeoutMs) {
-      int current = inflight.get();
-      if (current <= maxInflight) {
-        if (idleStart < 0) {
-          idleStart = System.currentTimeMillis();
-        } else if (System.currentTimeMillis() - idleStart >= idleMs) {
-          return;
-        }
-      } else {
-        idleStart = -1;
-      }
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-        return;
-      }
+    if (page.document().selectFirst(CAPTCHA_MARKUP) != null) {
+      return false;
     }
-    throw new com.microsoft.playwright.TimeoutError("Timeout " + timeoutMs + "ms exceeded waiting for network idle");
+    int textLength = text.trim().length();
+    boolean hasStructure = page.document().selectFirst("main, article, h1") != null;
+    return textLength >= 400 || hasStructure;
   }
 
   private Map<String, String> defaultHeaders() {
@@ -285,10 +338,34 @@ public class Scraper {
     return headers;
   }
 
-  private void randomDelay(int minMs, int maxMs) {
-    int delay = RANDOM.nextInt(maxMs - minMs + 1) + minMs;
+  // Spends at most the profile's budget: two pauses take fixed shares of it, and the last pause only uses
+  // whatever the mouse move and scroll have left over.
+  private void humanize(Page page, StealthProfile profile) {
+    Duration budget = profile.budget(RANDOM);
+    if (budget.isZero() && !profile.moveMouse() && !profile.scroll()) {
+      return;
+    }
+    long start = System.nanoTime();
+    long deadline = start + budget.toNanos();
+    pause(budget.toMillis() * 2 / 5);
+    if (profile.moveMouse()) {
+      page.mouse().move(RANDOM.nextInt(1000), RANDOM.nextInt(800));
+    }
+    pause(budget.toMillis() / 5);
+    if (profile.scroll() && System.nanoTime() < deadline) {
+      randomScroll(page);
+    }
+    pause(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    ConsoleUtil.ok("Humanization (" + profile.id() + ") took "
+        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+  }
+
+  private void pause(long millis) {
+    if (millis <= 0) {
+      return;
+    }
     try {
-      Thread.sleep(delay);
+      Thread.sleep(millis);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
     }
@@ -314,20 +391,22 @@ public class Scraper {
         """);
   }
 
-  private void ensureInitialized() {
-    if (browser == null) {
+  private synchronized BrowserPool pool() {
+    if (browserPool == null) {
       initialize(null);
     }
+    return browserPool;
   }
 
   public void close() {
-    if (browser != null) {
-      browser.close();
-      browser = null;
+    httpFetcher.close();
+    BrowserPool pool;
+    synchronized (this) {
+      pool = browserPool;
+      browserPool = null;
     }
-    if (playwright != null) {
-      playwright.close();
-      playwright = null;
+    if (pool != null) {
+      pool.close();
     }
   }
 }
@@ -0,0 +1,318 @@
+package com.declutter.scrape;
+
+import com.declutter.util.ConsoleUtil;
+import com.declutter.util.UrlUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+// Learns each host's page template from the pages decluttered so far, and strips it from the next ones.
+// Every block is fingerprinted by a hash of its tag and normalized text, built bottom-up from its children's
+// hashes in one pass. A block found on at least MIN_PAGES earlier pages of the host, and on most of the pages
+// since it first appeared, is template: header, footer, cookie banner, sidebar widget. A note that some
+// articles share (a stability badge, a changelog row) recurs on only a few pages and is kept. An article's
+// text is unique to its page, so it is never learned, and nothing costs a model call.
+public class SiteTemplates {
+  public static final int MIN_PAGES = 2;
+  private static final double MIN_RECURRENCE = 0.6;
+  private static final Set<String> BLOCKS = Set.of(
+      "div", "section", "header", "footer", "nav", "aside", "ul", "ol", "li", "p", "table", "form", "dl", "dialog");
+  private static final int MIN_BLOCK_CHARS = 40;
+  private static final double MIN_KEPT_SHARE = 0.2;
+  private static final int MAX_BLOCKS_PER_HOST = 5_000;
+  private static final int MAX_RECENT_PAGES = 200;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final Path directory;
+  private final boolean enabled;
+  private final Map<String, Host> hosts = new HashMap<>();
+
+  private SiteTemplates(Path directory, boolean enabled) {
+    this.directory = directory;
+    this.enabled = enabled;
+  }
+
+  public static SiteTemplates persistent(Path directory) {
+    return new SiteTemplates(directory, true);
+  }
+
+  public static SiteTemplates inMemory() {
+    return new SiteTemplates(null, true);
+  }
+
+  public static SiteTemplates disabled() {
+    return new SiteTemplates(null, false);
+  }
+
+  // Sizes are characters of normalized text.
+  public record Result(int blocksRemoved, long charsRemoved) {
+    public long estimatedTokensSaved() {
+      return charsRemoved / 4;
+    }
+  }
+
+  private record Block(long hash, int text) {}
+
+  private record Seen(int pages, long firstPage, long lastPage) {}
+
+  private static final class Host {
+    long pages;
+    final Set<String> recentPages = new LinkedHashSet<>();
+    final Map<Long, Seen> blocks = new HashMap<>();
+  }
+
+  // Strips the blocks this host's earlier pages taught us about, then learns from this page. A page already
+  // learned from is only stripped, so re-running one article cannot make it look like template; see pageKey.
+  // A template directory that cannot be read or written is warned about, and the run goes on without it.
+  public Result apply(Document document, String url) {
+    String hostName = HostScheduler.hostOf(url);
+    if (!enabled || hostName.isEmpty()) {
+      return new Result(0, 0);
+    }
+    Element body = document.body();
+    Map<Element, Block> blocks = fingerprint(body);
+    Set<Long> onPage = new HashSet<>();
+    blocks.forEach((element, block) -> {
+      if (isCandidate(element, block)) {
+        onPage.add(block.hash());
+      }
+    });
+
+    Set<Long> template = new HashSet<>();
+    synchronized (this) {
+      Host host = host(hostName);
+      for (Long hash : onPage) {
+        Seen seen = host.blocks.get(hash);
+        if (seen != null && isTemplate(seen, host)) {
+          template.add(hash);
+        }
+      }
+      if (host.recentPages.add(pageKey(document, url, hostName))) {
+        learn(host, onPage);
+        try {
+          save(hostName, host);
+        } catch (UncheckedIOException e) {
+          ConsoleUtil.warn("Site template update failed: " + e.getMessage());
+        }
+      }
+    }
+    if (template.isEmpty()) {
+      return new Result(0, 0);
+    }
+
+    List<Element> removals = new ArrayList<>();
+    long[] removedChars = {0};
+    NodeTraversor.filter(new NodeFilter() {
+      @Override
+      public FilterResult head(Node node, int depth) {
+        if (node instanceof Element element) {
+          Block block = blocks.get(element);
+          if (block != null && isCandidate(element, block) && template.contains(block.hash())) {
+            removals.add(element);
+            removedChars[0] += block.text();
+            return FilterResult.SKIP_ENTIRELY;
+          }
+        }
+        return FilterResult.CONTINUE;
+      }
+    }, body);
+    // A page that is nearly all template (a paywall or error page, say) is left alone rather than emptied.
+    int total = blocks.get(body).text();
+    if (total - removedChars[0] < MIN_KEPT_SHARE * total) {
+      return new Result(0, 0);
+    }
+    removals.forEach(Element::remove);
+    return new Result(removals.size(), removedChars[0]);
+  }
+
+  // The same article reached through a share link (?utm_source=..., ?fbclid=...), over http or with a
+  // fragment gets one key. A canonical link on the same host wins over the requested URL.
+  private static String pageKey(Document document, String url, String hostName) {
+    Element canonical = document.selectFirst("link[rel=canonical][href]");
+    String href = canonical == null ? "" : canonical.absUrl("href");
+    String page = !href.isEmpty() && HostScheduler.hostOf(href).equals(hostName) ? href : url;
+    String withoutScheme = UrlUtil.withoutTracking(page).replaceFirst("^[a-zA-Z][a-zA-Z0-9+.-]*://", "");
+    return Integer.toHexString(Pagination.key(withoutScheme).hashCode());
+  }
+
+  private static boolean isTemplate(Seen seen, Host host) {
+    return seen.pages() >= MIN_PAGES && seen.pages() >= MIN_RECURRENCE * (host.pages - seen.firstPage() + 1);
+  }
+
+  private static boolean isCandidate(Element element, Block block) {
+    return block.text() >= MIN_BLOCK_CHARS && BLOCKS.contains(element.normalName());
+  }
+
+  private static void learn(Host host, Set<Long> onPage) {
+    host.pages++;
+    for (Long hash : onPage) {
+      Seen seen = host.blocks.get(hash);
+      host.blocks.put(hash, seen == null
+          ? new Seen(1, host.pages, host.pages)
+          : new Seen(seen.pages() + 1, seen.firstPage(), host.pages));
+    }
+    while (host.recentPages.size() > MAX_RECENT_PAGES) {
+      host.recentPages.remove(host.recentPages.iterator().next());
+    }
+    // Blocks seen on one page only are mostly articles; they go first, oldest first, when the host is full.
+    if (host.blocks.size() > MAX_BLOCKS_PER_HOST) {
+      List<Map.Entry<Long, Seen>> entries = new ArrayList<>(host.blocks.entrySet());
+      entries.sort(Comparator.comparingInt((Map.Entry<Long, Seen> e) -> e.getValue().pages())
+          .thenComparingLong(e -> e.getValue().lastPage()));
+      for (int i = 0; i < entries.size() - MAX_BLOCKS_PER_HOST; i++) {
+        host.blocks.remove(entries.get(i).getKey());
+      }
+    }
+  }
+
+  private static Map<Element, Block> fingerprint(Element root) {
+    Map<Element, Block> blocks = new IdentityHashMap<>();
+    NodeTraversor.traverse(new NodeVisitor() {
+      @Override
+      public void head(Node node, int depth) {}
+
+      @Override
+      public void tail(Node node, int depth) {
+        if (!(node instanceof Element element)) {
+          return;
+        }
+        long hash = mix(FNV_OFFSET, element.normalName());
+        int text = 0;
+        for (Node child : element.childNodes()) {
+          if (child instanceof TextNode textNode) {
+            String value = normalize(textNode.text());
+            if (!value.isEmpty()) {
+              hash = mix(hash, value);
+              text += value.length();
+            }
+          } else if (child instanceof Element childElement) {
+            Block block = blocks.get(childElement);
+            hash = (hash ^ block.hash()) * FNV_PRIME;
+            text += block.text();
+          }
+        }
+        blocks.put(element, new Block(hash, text));
+      }
+    }, root);
+    return blocks;
+  }
+
+  private static String normalize(String text) {
+    StringBuilder sb = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (!Character.isWhitespace(c)) {
+        sb.append(Character.toLowerCase(c));
+      }
+    }
+    return sb.toString();
+  }
+
+  private static long mix(long hash, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    return (hash ^ 0xff) * FNV_PRIME;
+  }
+
+  private Host host(String hostName) {
+    Host host = hosts.get(hostName);
+    if (host == null) {
+      host = new Host();
+      Path file = file(hostName);
+      if (file != null && Files.exists(file)) {
+        try {
+          load(file, host);
+        } catch (UncheckedIOException e) {
+          ConsoleUtil.warn("Site template load failed: " + e.getMessage());
+        }
+      }
+      hosts.put(hostName, host);
+    }
+    return host;
+  }
+
+  private Path file(String hostName) {
+    return directory == null ? null : directory.resolve(hostName + ".properties");
+  }
+
+  // "pages" counts the pages learned from, "page.<hash>" lists the recent ones, and "block.<hash>" holds
+  // "<pages seen on> <page number first seen> <page number last seen>". Unreadable entries are dropped and
+  // simply learned again.
+  private static void load(Path file, Host host) {
+    Properties props = new Properties();
+    try (InputStream input = Files.newInputStream(file)) {
+      props.load(input);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the site template from " + file, e);
+    }
+    List<Map.Entry<Long, String>> recent = new ArrayList<>();
+    for (String key : props.stringPropertyNames()) {
+      String value = props.getProperty(key).trim();
+      try {
+        if (key.equals("pages")) {
+          host.pages = Long.parseLong(value);
+        } else if (key.startsWith("page.")) {
+          recent.add(Map.entry(Long.parseLong(value), key.substring("page.".length())));
+        } else if (key.startsWith("block.")) {
+          String[] parts = value.split("\\s+");
+          host.blocks.put(Long.parseUnsignedLong(key.substring("block.".length()), 16),
+              new Seen(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+        }
+      } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ignored) {
+        // Skip the entry.
+      }
+    }
+    recent.sort(Map.Entry.comparingByKey());
+    recent.forEach(entry -> host.recentPages.add(entry.getValue()));
+  }
+
+  private void save(String hostName, Host host) {
+    Path file = file(hostName);
+    if (file == null) {
+      return;
+    }
+    Properties props = new Properties();
+    props.setProperty("pages", String.valueOf(host.pages));
+    long number = host.pages - host.recentPages.size();
+    for (String page : host.recentPages) {
+      props.setProperty("page." + page, String.valueOf(++number));
+    }
+    host.blocks.forEach((hash, seen) -> props.setProperty("block." + Long.toHexString(hash),
+        String.format(Locale.ROOT, "%d %d %d", seen.pages(), seen.firstPage(), seen.lastPage())));
+    try {
+      Files.createDirectories(file.getParent());
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      try (OutputStream output = Files.newOutputStream(temp)) {
+        props.store(output, null);
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write the site template to " + file, e);
+    }
+  }
+}
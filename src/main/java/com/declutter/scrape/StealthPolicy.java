@@ -0,0 +1,32 @@
+package com.declutter.scrape;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Picks the stealth profile for a URL: a per-host override (matching the host or any subdomain of it,
+// most specific first) or else the run's default.
+public record StealthPolicy(StealthProfile defaultProfile, Map<String, StealthProfile> hosts) {
+  public StealthPolicy {
+    hosts = hosts.entrySet().stream().collect(Collectors.toUnmodifiableMap(
+        entry -> entry.getKey().trim().toLowerCase(Locale.ROOT),
+        Map.Entry::getValue));
+  }
+
+  public static StealthPolicy defaults() {
+    return new StealthPolicy(StealthProfile.FULL, Map.of());
+  }
+
+  public StealthProfile profileFor(String url) {
+    String host = HostScheduler.hostOf(url);
+    while (!host.isEmpty()) {
+      StealthProfile profile = hosts.get(host);
+      if (profile != null) {
+        return profile;
+      }
+      int dot = host.indexOf('.');
+      host = dot < 0 ? "" : host.substring(dot + 1);
+    }
+    return defaultProfile;
+  }
+}
@@ -0,0 +1,129 @@
+package com.declutter.scrape;
+
+import java.time.Duration;
+import java.util.Random;
+
+// How hard a browser render works at looking like a person: the fingerprint-masking init script, a mouse
+// move and scroll, and the total time allowed for the pauses around them. Trusted sites can use NONE and
+// pay no artificial latency; FULL matches what every render used to do.
+public enum StealthProfile {
+  NONE("none", false, false, false, Duration.ZERO, Duration.ZERO),
+  LIGHT("light", true, true, false, Duration.ofMillis(200), Duration.ofMillis(600)),
+  FULL("full", true, true, true, Duration.ofMillis(1300), Duration.ofMillis(3300));
+
+  private static final String STEALTH_SCRIPT = """
+      Object.defineProperty(navigator, 'webdriver', { get: () => undefined });
+      window.chrome = { runtime: {} };
+      const originalQuery = window.navigator.permissions.query;
+      window.navigator.permissions.query = (parameters) =>
+        parameters.name === 'notifications'
+          ? Promise.resolve({ state: Notification.permission })
+          : originalQuery(parameters);
+      Object.defineProperty(navigator, 'plugins', {
+        get: () => [
+          {
+            0: { type: 'application/x-google-chrome-pdf', suffixes: 'pdf', description: 'Portable Document Format', enabledPlugin: Plugin },
+            description: 'Portable Document Format',
+            filename: 'internal-pdf-viewer',
+            length: 1,
+            name: 'Chrome PDF Plugin',
+          },
+          {
+            0: { type: 'application/pdf', suffixes: 'pdf', description: '', enabledPlugin: Plugin },
+            description: '',
+            filename: 'mhjfbmdgcfjbbpaeojofohoefgiehjai',
+            length: 1,
+            name: 'Chrome PDF Viewer',
+          },
+          {
+            0: { type: 'application/x-nacl', suffixes: '', description: 'Native Client Executable', enabledPlugin: Plugin },
+            1: { type: 'application/x-pnacl', suffixes: '', description: 'Portable Native Client Executable', enabledPlugin: Plugin },
+            description: '',
+            filename: 'internal-nacl-plugin',
+            length: 2,
+            name: 'Native Client',
+          },
+        ],
+      });
+      Object.defineProperty(navigator, 'languages', { get: () => ['en-US', 'en'] });
+      const originalToString = Function.prototype.toString;
+      Function.prototype.toString = function () {
+        if (this === window.navigator.permissions.query) {
+          return 'function query() { [native code] }';
+        }
+        return originalToString.call(this);
+      };
+      Object.defineProperty(navigator, 'platform', { get: () => 'Win32' });
+      Object.defineProperty(navigator, 'hardwareConcurrency', { get: () => 8 });
+      Object.defineProperty(navigator, 'deviceMemory', { get: () => 8 });
+      const originalContentWindow = Object.getOwnPropertyDescriptor(HTMLIFrameElement.prototype, 'contentWindow');
+      if (originalContentWindow) {
+        Object.defineProperty(HTMLIFrameElement.prototype, 'contentWindow', {
+          get: function () {
+            const win = originalContentWindow.get?.call(this);
+            if (win) {
+              try { win.navigator.webdriver = false; } catch {}
+            }
+            return win;
+          },
+        });
+      }
+      let mouseX = 0;
+      let mouseY = 0;
+      const updateMousePosition = () => {
+        mouseX += (Math.random() - 0.5) * 10;
+        mouseY += (Math.random() - 0.5) * 10;
+        mouseX = Math.max(0, Math.min(window.innerWidth, mouseX));
+        mouseY = Math.max(0, Math.min(window.innerHeight, mouseY));
+      };
+      setInterval(updateMousePosition, 100);
+      """;
+
+  private final String id;
+  private final boolean maskFingerprint;
+  private final boolean moveMouse;
+  private final boolean scroll;
+  private final Duration minBudget;
+  private final Duration maxBudget;
+
+  StealthProfile(String id, boolean maskFingerprint, boolean moveMouse, boolean scroll,
+                 Duration minBudget, Duration maxBudget) {
+    this.id = id;
+    this.maskFingerprint = maskFingerprint;
+    this.moveMouse = moveMouse;
+    this.scroll = scroll;
+    this.minBudget = minBudget;
+    this.maxBudget = maxBudget;
+  }
+
+  public String id() {
+    return id;
+  }
+
+  public String initScript() {
+    return maskFingerprint ? STEALTH_SCRIPT : null;
+  }
+
+  public boolean moveMouse() {
+    return moveMouse;
+  }
+
+  public boolean scroll() {
+    return scroll;
+  }
+
+  public Duration budget(Random random) {
+    long min = minBudget.toMillis();
+    long max = maxBudget.toMillis();
+    return Duration.ofMillis(max <= min ? min : min + random.nextLong(max - min + 1));
+  }
+
+  public static StealthProfile from(String value) {
+    for (StealthProfile profile : values()) {
+      if (profile.id.equalsIgnoreCase(value)) {
+        return profile;
+      }
+    }
+    throw new IllegalArgumentException("stealth profile can only be one of: none, light, full");
+  }
+}
@@ -19,10 +19,19 @@ public final class ConsoleUtil {
   }
 
   public static <T> T runLoading(Supplier<T> task, String message) {
+    return runLoading(task, () -> message);
+  }
+
+  // The message is asked for again on every frame, so it can report progress. A shorter message, and the
+  // line once the task is done, are blanked to the widest one shown.
+  public static <T> T runLoading(Supplier<T> task, Supplier<String> message) {
     ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     final int[] index = {0};
+    final int[] width = {0};
     scheduler.scheduleAtFixedRate(() -> {
-      System.out.print("\r" + FRAMES[index[0] % FRAMES.length] + " " + message);
+      String line = FRAMES[index[0] % FRAMES.length] + " " + message.get();
+      width[0] = Math.max(width[0], line.length());
+      System.out.print("\r" + line + " ".repeat(width[0] - line.length()));
       index[0]++;
     }, 0, 75, TimeUnit.MILLISECONDS);
 
@@ -30,7 +39,7 @@ public final class ConsoleUtil {
       return task.get();
     } finally {
       scheduler.shutdownNow();
-      System.out.print("\r");
+      System.out.print("\r" + " ".repeat(width[0]) + "\r");
     }
   }
 }
@@ -0,0 +1,277 @@
+package com.declutter.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Splits long Markdown into pieces the model can declutter independently, and joins its answers back up.
+// Pieces are cut between blocks (paragraphs, lists, tables, fenced code), preferably where a section starts,
+// and each piece after the first repeats a short block from the end of the one before so the model has
+// context at the cut; the duplicate that usually comes back twice is dropped again when stitching.
+public final class MarkdownChunker {
+  public static final int DEFAULT_CHUNK_TOKENS = 8_000;
+  private static final Pattern HEADING = Pattern.compile("#{1,6}\\s.*");
+  private static final Pattern BLANK_RUN = Pattern.compile("\\n[ \\t]*\\n\\s*");
+  private static final int CHARS_PER_TOKEN = 4;
+  private static final int MAX_OVERLAP_CHARS = 16_000;
+
+  private MarkdownChunker() {}
+
+  // The same rough chars-per-token estimate the pre-filter reports with; close enough to size requests.
+  public static int estimateTokens(String text) {
+    return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+  }
+
+  public static List<String> split(String markdown, int budgetTokens) {
+    if (budgetTokens < 1) {
+      throw new IllegalArgumentException("chunk budget must be at least 1 token");
+    }
+    if (markdown == null || estimateTokens(markdown) <= budgetTokens) {
+      return List.of(markdown == null ? "" : markdown);
+    }
+    List<List<String>> chunks = new ArrayList<>();
+    List<String> current = new ArrayList<>();
+    int currentTokens = 0;
+    for (String block : blocks(markdown)) {
+      int tokens = estimateTokens(block);
+      boolean heading = HEADING.matcher(block).matches();
+      boolean full = currentTokens + tokens > budgetTokens;
+      if (!current.isEmpty() && (full || (heading && currentTokens >= budgetTokens / 2))) {
+        // A heading left at the very end of a chunk belongs with the section that follows it.
+        List<String> carried = new ArrayList<>();
+        if (current.size() > 1 && HEADING.matcher(current.getLast()).matches()) {
+          carried.add(current.removeLast());
+        }
+        chunks.add(current);
+        current = carried;
+        currentTokens = carried.isEmpty() ? 0 : estimateTokens(carried.getFirst());
+      }
+      if (tokens > budgetTokens) {
+        List<List<String>> pieces = splitBlock(block, budgetTokens);
+        pieces.getFirst().addAll(0, current);
+        chunks.addAll(pieces);
+        current = new ArrayList<>();
+        currentTokens = 0;
+        continue;
+      }
+      current.add(block);
+      currentTokens += tokens;
+    }
+    if (!current.isEmpty()) {
+      chunks.add(current);
+    }
+
+    List<String> pieces = new ArrayList<>(chunks.size());
+    int overlapTokens = budgetTokens / 10;
+    for (int i = 0; i < chunks.size(); i++) {
+      List<String> chunk = chunks.get(i);
+      StringBuilder piece = new StringBuilder();
+      if (i > 0) {
+        String previous = chunks.get(i - 1).getLast();
+        if (estimateTokens(previous) <= overlapTokens && !HEADING.matcher(previous).matches()) {
+          piece.append(previous).append("\n\n");
+        }
+      }
+      piece.append(String.join("\n\n", chunk));
+      pieces.add(piece.toString());
+    }
+    return pieces;
+  }
+
+  // Joins the model's answers for consecutive pieces. Where the start of one answer repeats the end of the
+  // previous one (the overlap, possibly reformatted), the repeat is dropped, and a code block split by
+  // splitBlock is joined back into one.
+  public static String stitch(List<String> parts) {
+    StringBuilder out = new StringBuilder();
+    List<String> previous = List.of();
+    for (String part : parts) {
+      String text = part == null ? "" : part.strip();
+      if (text.isEmpty()) {
+        continue;
+      }
+      List<String> paragraphs = new ArrayList<>();
+      List<Integer> starts = new ArrayList<>();
+      Matcher matcher = BLANK_RUN.matcher(text);
+      int start = 0;
+      while (matcher.find()) {
+        paragraphs.add(text.substring(start, matcher.start()));
+        starts.add(start);
+        start = matcher.end();
+      }
+      paragraphs.add(text.substring(start));
+      starts.add(start);
+
+      int skip = seamOverlap(previous, paragraphs);
+      if (skip == paragraphs.size()) {
+        continue;
+      }
+      String rest = text.substring(starts.get(skip));
+      String opening = out.isEmpty() ? null : closedFenceAtEnd(out.toString());
+      if (opening != null && rest.startsWith(opening + "\n")) {
+        // A code block split across pieces: drop the fence closed at the cut and the one reopening it.
+        out.setLength(out.lastIndexOf("\n") + 1);
+        out.append(rest, opening.length() + 1, rest.length());
+      } else {
+        if (!out.isEmpty()) {
+          out.append("\n\n");
+        }
+        out.append(rest);
+      }
+      previous = paragraphs;
+    }
+    return out.toString();
+  }
+
+  // The number of leading paragraphs of next that repeat the end of previous. Both sides are compared as
+  // normalized text cut at paragraph boundaries, since a repeated code block can hold blank lines of its own.
+  private static int seamOverlap(List<String> previous, List<String> next) {
+    Set<String> tails = new HashSet<>();
+    StringBuilder tail = new StringBuilder();
+    for (int i = previous.size() - 1; i >= 0 && tail.length() < MAX_OVERLAP_CHARS; i--) {
+      tail.insert(0, normalize(previous.get(i)));
+      tails.add(tail.toString());
+    }
+    int overlap = 0;
+    StringBuilder head = new StringBuilder();
+    for (int k = 0; k < next.size() && head.length() < MAX_OVERLAP_CHARS; k++) {
+      head.append(normalize(next.get(k)));
+      if (!head.isEmpty() && tails.contains(head.toString())) {
+        overlap = k + 1;
+      }
+    }
+    return overlap;
+  }
+
+  // Letters and digits only, so a repeat that differs in emphasis, escaping or wrapping still matches.
+  private static String normalize(String paragraph) {
+    StringBuilder sb = new StringBuilder(paragraph.length());
+    paragraph.codePoints()
+        .filter(Character::isLetterOrDigit)
+        .map(Character::toLowerCase)
+        .forEach(sb::appendCodePoint);
+    return sb.toString();
+  }
+
+  // Blank lines separate blocks, except inside fenced code; a heading is always a block of its own.
+  private static List<String> blocks(String markdown) {
+    List<String> blocks = new ArrayList<>();
+    StringBuilder block = new StringBuilder();
+    String fence = null;
+    for (String line : markdown.split("\\R", -1)) {
+      String trimmed = line.strip();
+      if (fence != null) {
+        block.append(line).append('\n');
+        if (trimmed.startsWith(fence)) {
+          fence = null;
+        }
+        continue;
+      }
+      if (trimmed.startsWith("```") || trimmed.startsWith("~~~")) {
+        fence = trimmed.substring(0, 3);
+      }
+      boolean heading = HEADING.matcher(trimmed).matches();
+      if ((trimmed.isEmpty() || heading) && !block.isEmpty()) {
+        blocks.add(block.toString().stripTrailing());
+        block.setLength(0);
+      }
+      if (heading) {
+        blocks.add(trimmed);
+      } else if (!trimmed.isEmpty() || fence != null) {
+        block.append(line).append('\n');
+      }
+    }
+    if (!block.isEmpty()) {
+      blocks.add(block.toString().stripTrailing());
+    }
+    return blocks;
+  }
+
+  // A single block over budget (a huge table or code listing) is cut between lines, and a single line over
+  // budget between words. A cut inside fenced code closes the fence and the next piece reopens it with the
+  // same info string, so every piece is valid Markdown on its own.
+  private static List<List<String>> splitBlock(String block, int budgetTokens) {
+    int budgetChars = budgetTokens * CHARS_PER_TOKEN;
+    List<List<String>> pieces = new ArrayList<>();
+    StringBuilder piece = new StringBuilder();
+    String opening = null;
+    int header = 0;
+    for (String line : block.split("\n")) {
+      String trimmed = line.strip();
+      boolean closes = opening != null && trimmed.startsWith(fenceMarker(opening));
+      boolean opens = opening == null && (trimmed.startsWith("```") || trimmed.startsWith("~~~"));
+      int closing = opening == null ? 0 : fenceMarker(opening).length() + 1;
+      if (!closes && piece.length() > header && piece.length() + line.length() + 1 + closing > budgetChars) {
+        pieces.add(closedPiece(piece, opening));
+        header = reopen(piece, opening);
+      }
+      String rest = line;
+      int room = Math.max(1, budgetChars - header - closing);
+      while (!closes && !opens && rest.length() > room) {
+        int cut = rest.lastIndexOf(' ', room);
+        cut = cut <= 0 ? room : cut;
+        piece.append(rest, 0, cut);
+        pieces.add(closedPiece(piece, opening));
+        header = reopen(piece, opening);
+        rest = rest.substring(cut).stripLeading();
+      }
+      piece.append(rest).append('\n');
+      if (closes) {
+        opening = null;
+      } else if (opens) {
+        opening = trimmed;
+      }
+    }
+    if (!piece.toString().isBlank()) {
+      pieces.add(new ArrayList<>(List.of(piece.toString().stripTrailing())));
+    }
+    return pieces;
+  }
+
+  private static List<String> closedPiece(StringBuilder piece, String opening) {
+    String text = piece.toString().stripTrailing();
+    return new ArrayList<>(List.of(opening == null ? text : text + "\n" + fenceMarker(opening)));
+  }
+
+  // Empties piece for the next one, starting it inside the open fence if there is one; returns its length.
+  private static int reopen(StringBuilder piece, String opening) {
+    piece.setLength(0);
+    if (opening != null) {
+      piece.append(opening).append('\n');
+    }
+    return piece.length();
+  }
+
+  // The run of backticks or tildes that opens a fence; the closing fence repeats it.
+  private static String fenceMarker(String opening) {
+    int end = 0;
+    while (end < opening.length() && opening.charAt(end) == opening.charAt(0)) {
+      end++;
+    }
+    return opening.substring(0, end);
+  }
+
+  // The opening line of the fenced block that text ends with, or null if it does not end with a closing fence.
+  private static String closedFenceAtEnd(String text) {
+    String opening = null;
+    String closed = null;
+    for (String line : text.split("\\R")) {
+      String trimmed = line.strip();
+      if (opening != null) {
+        if (trimmed.startsWith(fenceMarker(opening)) && trimmed.length() == fenceMarker(opening).length()) {
+          closed = opening;
+          opening = null;
+          continue;
+        }
+      } else if (trimmed.startsWith("```") || trimmed.startsWith("~~~")) {
+        opening = trimmed;
+      }
+      if (!trimmed.isEmpty()) {
+        closed = null;
+      }
+    }
+    return opening == null ? closed : null;
+  }
+}
@@ -0,0 +1,197 @@
+package com.declutter.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Cleans up the model's Markdown in one streaming pass over its lines. Each rule sees the lines the rule
+// before it let through, and runs of blank lines are collapsed as the result is written, so another cleanup
+// step costs a little per line instead of another pass over the whole document.
+public final class MarkdownCleaner {
+  private static final Pattern MARKDOWN_IMAGE = Pattern.compile("!\\[[^\\]]*\\]\\(([^\\s)]+)(?:\\s+\"[^\"]*\")?\\)");
+  private static final Pattern IMAGES_HEADING = Pattern.compile("#{1,6}\\s*Images\\s*");
+  private static final Pattern HEADING = Pattern.compile("#{1,6}\\s+.*");
+  private static final List<String> IMAGE_EXTENSIONS =
+      List.of(".png", ".jpg", ".jpeg", ".gif", ".webp", ".svg", ".bmp", ".tiff", ".avif");
+  private static final List<String> IMAGE_FORMATS = List.of("png", "jpg", "jpeg", "gif", "webp", "svg", "avif");
+
+  // A step over whole lines. It passes lines on to next, dropping or rewriting them as it likes, and may
+  // hold some back until it has seen what follows; finish is called once after the last line.
+  public interface Rule {
+    void accept(String line, Consumer<String> next);
+
+    default void finish(Consumer<String> next) {}
+  }
+
+  // Rules keep state while a document streams through, so each clean() gets fresh ones.
+  private final List<Supplier<Rule>> rules;
+
+  public MarkdownCleaner(List<Supplier<Rule>> rules) {
+    this.rules = List.copyOf(rules);
+  }
+
+  // Drops image syntax that points at something other than an image, then "Images" headings left empty.
+  public static MarkdownCleaner defaults() {
+    return new MarkdownCleaner(List.of(NonImageImages::new, EmptyImagesSection::new));
+  }
+
+  public MarkdownCleaner with(Supplier<Rule> rule) {
+    List<Supplier<Rule>> extended = new ArrayList<>(rules);
+    extended.add(rule);
+    return new MarkdownCleaner(extended);
+  }
+
+  public String clean(String markdown) {
+    if (markdown == null || markdown.isBlank()) {
+      return markdown == null ? "" : markdown;
+    }
+    Output output = new Output(markdown.length());
+    List<Rule> chain = new ArrayList<>(rules.size());
+    for (Supplier<Rule> rule : rules) {
+      chain.add(rule.get());
+    }
+    Consumer<String> head = stage(chain, 0, output);
+
+    int length = markdown.length();
+    int start = 0;
+    int i = 0;
+    while (i < length) {
+      char c = markdown.charAt(i);
+      if (isLineBreak(c)) {
+        head.accept(markdown.substring(start, i));
+        i += c == '\r' && i + 1 < length && markdown.charAt(i + 1) == '\n' ? 2 : 1;
+        start = i;
+      } else {
+        i++;
+      }
+    }
+    boolean endsWithLineBreak = start == length;
+    if (!endsWithLineBreak) {
+      head.accept(markdown.substring(start));
+    }
+    for (int r = 0; r < chain.size(); r++) {
+      chain.get(r).finish(stage(chain, r + 1, output));
+    }
+    return output.toString(endsWithLineBreak);
+  }
+
+  private static Consumer<String> stage(List<Rule> chain, int index, Output output) {
+    if (index == chain.size()) {
+      return output::write;
+    }
+    Rule rule = chain.get(index);
+    Consumer<String> next = stage(chain, index + 1, output);
+    return line -> rule.accept(line, next);
+  }
+
+  // The same line terminators as \R.
+  private static boolean isLineBreak(char c) {
+    return c == '\n' || c == '\r' || c == '\u000B' || c == '\u000C' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  // Writes lines, allowing at most one blank line in a row (two consecutive line breaks).
+  private static final class Output {
+    private final StringBuilder out;
+    private int trailingLineBreaks;
+
+    Output(int capacity) {
+      out = new StringBuilder(capacity);
+    }
+
+    void write(String line) {
+      if (line.isEmpty() && trailingLineBreaks >= 2) {
+        return;
+      }
+      out.append(line).append('\n');
+      trailingLineBreaks = line.isEmpty() ? trailingLineBreaks + 1 : 1;
+    }
+
+    String toString(boolean endsWithLineBreak) {
+      if (!endsWithLineBreak && !out.isEmpty()) {
+        out.setLength(out.length() - 1);
+      }
+      return out.toString();
+    }
+  }
+
+  // Image syntax around links to pages, scripts and the like, which the model sometimes produces.
+  private static final class NonImageImages implements Rule {
+    @Override
+    public void accept(String line, Consumer<String> next) {
+      if (!line.contains("![")) {
+        next.accept(line);
+        return;
+      }
+      Matcher matcher = MARKDOWN_IMAGE.matcher(line);
+      StringBuilder sb = null;
+      int last = 0;
+      while (matcher.find()) {
+        if (!isLikelyImageUrl(matcher.group(1))) {
+          if (sb == null) {
+            sb = new StringBuilder(line.length());
+          }
+          sb.append(line, last, matcher.start());
+          last = matcher.end();
+        }
+      }
+      if (sb == null) {
+        next.accept(line);
+      } else {
+        next.accept(sb.append(line, last, line.length()).toString());
+      }
+    }
+  }
+
+  // An "Images" heading followed only by blank lines up to the next heading or the end of the document.
+  private static final class EmptyImagesSection implements Rule {
+    private final List<String> held = new ArrayList<>();
+
+    @Override
+    public void accept(String line, Consumer<String> next) {
+      if (!held.isEmpty()) {
+        if (line.isBlank()) {
+          held.add(line);
+          return;
+        }
+        if (!HEADING.matcher(line).matches()) {
+          held.forEach(next);
+        }
+        held.clear();
+      }
+      if (IMAGES_HEADING.matcher(line).matches()) {
+        held.add(line);
+      } else {
+        next.accept(line);
+      }
+    }
+
+    @Override
+    public void finish(Consumer<String> next) {
+      held.clear();
+    }
+  }
+
+  private static boolean isLikelyImageUrl(String url) {
+    if (url == null || url.isBlank()) {
+      return false;
+    }
+    String lower = url.toLowerCase();
+    int queryIndex = lower.indexOf('?');
+    String path = queryIndex >= 0 ? lower.substring(0, queryIndex) : lower;
+    for (String extension : IMAGE_EXTENSIONS) {
+      if (path.endsWith(extension)) {
+        return true;
+      }
+    }
+    String query = queryIndex >= 0 ? lower.substring(queryIndex + 1) : "";
+    for (String format : IMAGE_FORMATS) {
+      if (query.contains("format=" + format)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -9,19 +9,21 @@ import com.vladsch.flexmark.html2md.converter.LinkConversion;
 import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.util.data.MutableDataSet;
 import org.jsoup.Jsoup;
+import org.jsoup.internal.StringUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.TextNode;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public final class MarkdownUtil {
-  private static final Pattern MARKDOWN_IMAGE = Pattern.compile("!\\[[^\\]]*\\]\\(([^\\s)]+)(?:\\s+\"[^\"]*\")?\\)");
+  private static final Pattern PLACEHOLDER = Pattern.compile("@@(?:IMG|LINK|TABLE)_(\\d{1,9})@@");
   private static final Parser PARSER;
   private static final HtmlRenderer RENDERER;
   private static final FlexmarkHtmlConverter HTML_CONVERTER;
@@ -55,9 +57,14 @@ public final class MarkdownUtil {
     }
     Document doc = Jsoup.parse(html);
     doc.select("script, style, iframe, object, embed, noscript").remove();
+    return htmlToMarkdown(doc, hostname);
+  }
 
-    Map<String, String> replacements = new LinkedHashMap<>();
-    AtomicInteger counter = new AtomicInteger(0);
+  // Converts an already parsed and cleaned document in place; the document is consumed by the conversion.
+  // Images, links and tables become plain-text placeholders so flexmark lays the page out around them as
+  // inline text, and never escapes their Markdown; the finished Markdown is put back in one pass at the end.
+  public static String htmlToMarkdown(Document doc, String hostname) {
+    List<String> replacements = new ArrayList<>();
 
     // Handle images - convert to markdown with absolute URLs
     for (Element img : doc.select("img")) {
@@ -73,9 +80,7 @@ public final class MarkdownUtil {
       String markdown = normalized == null || normalized.isBlank()
           ? ""
           : "![" + alt + "](" + normalized + titlePart + ")";
-      String placeholder = "@@IMG_" + counter.getAndIncrement() + "@@";
-      replacements.put(placeholder, markdown);
-      img.replaceWith(new TextNode(placeholder));
+      img.replaceWith(new TextNode(placeholder("IMG", markdown, replacements)));
     }
 
     // Handle links - convert to markdown with absolute URLs
@@ -99,43 +104,60 @@ public final class MarkdownUtil {
       String normalized = normalizeUrl(href, hostname);
       String titlePart = title == null || title.isBlank() ? "" : " \"" + title + "\"";
       String markdown = "[" + text + "](" + normalized + titlePart + ")";
-      String placeholder = "@@LINK_" + counter.getAndIncrement() + "@@";
-      replacements.put(placeholder, markdown);
-      link.replaceWith(new TextNode(placeholder));
+      link.replaceWith(new TextNode(placeholder("LINK", markdown, replacements)));
     }
 
     // Handle tables
     for (Element table : doc.select("table")) {
-      String markdown = tableToMarkdown(table);
-      String placeholder = "@@TABLE_" + counter.getAndIncrement() + "@@";
-      replacements.put(placeholder, markdown);
-      table.replaceWith(new TextNode(placeholder));
+      table.replaceWith(new TextNode(placeholder("TABLE", tableToMarkdown(table), replacements)));
     }
 
-    String converted = HTML_CONVERTER.convert(doc.html());
-    for (Map.Entry<String, String> entry : replacements.entrySet()) {
-      converted = converted.replace(entry.getKey(), entry.getValue());
-    }
-    return converted;
+    collapseWhitespace(doc);
+    String converted = HTML_CONVERTER.convert(doc);
+    StringBuilder markdown = new StringBuilder(converted.length() * 2);
+    expandPlaceholders(converted, replacements, replacements.size(), markdown);
+    return markdown.toString();
   }
 
-  public static String removeNonImageMarkdownImages(String markdown) {
-    if (markdown == null || markdown.isBlank()) {
-      return markdown == null ? "" : markdown;
-    }
-    Matcher matcher = MARKDOWN_IMAGE.matcher(markdown);
-    StringBuffer sb = new StringBuffer();
+  private static String placeholder(String kind, String markdown, List<String> replacements) {
+    replacements.add(markdown);
+    return "@@" + kind + "_" + (replacements.size() - 1) + "@@";
+  }
+
+  // A single left-to-right scan instead of one replace() over the whole output per placeholder, which was
+  // quadratic on link-heavy pages. Link text can carry image placeholders and table cells link placeholders,
+  // so a replacement is expanded too, but only with placeholders created before it.
+  private static void expandPlaceholders(String text, List<String> replacements, int limit, StringBuilder out) {
+    Matcher matcher = PLACEHOLDER.matcher(text);
+    int last = 0;
     while (matcher.find()) {
-      String url = matcher.group(1);
-      if (isLikelyImageUrl(url)) {
-        matcher.appendReplacement(sb, Matcher.quoteReplacement(matcher.group()));
-      } else {
-        matcher.appendReplacement(sb, "");
+      int index = Integer.parseInt(matcher.group(1));
+      if (index < limit) {
+        out.append(text, last, matcher.start());
+        expandPlaceholders(replacements.get(index), replacements, index, out);
+        last = matcher.end();
       }
     }
-    matcher.appendTail(sb);
-    String cleaned = sb.toString().replaceAll("\\n{3,}", "\n\n");
-    return removeEmptyImagesSection(cleaned);
+    out.append(text, last, text.length());
+  }
+
+  // Serializing with doc.html() used to collapse runs of whitespace in text as a side effect; converting the
+  // Document directly needs the same normalization to produce identical Markdown.
+  private static void collapseWhitespace(Document doc) {
+    Set<TextNode> preserved = preservedText(doc);
+    doc.nodeStream(TextNode.class)
+        .filter(text -> !preserved.contains(text))
+        .forEach(text -> text.text(StringUtil.normaliseWhitespace(text.getWholeText())));
+  }
+
+  // Every text node at any depth under <pre>, <textarea> and the other whitespace-preserving tags, found once
+  // per document; highlighted code nests its text many spans deep.
+  private static Set<TextNode> preservedText(Document doc) {
+    Set<TextNode> preserved = Collections.newSetFromMap(new IdentityHashMap<>());
+    doc.nodeStream(Element.class)
+        .filter(element -> element.tag().preserveWhitespace())
+        .forEach(element -> element.nodeStream(TextNode.class).forEach(preserved::add));
+    return preserved;
   }
 
   private static boolean isLikelySiteLogo(Element img) {
@@ -165,50 +187,6 @@ public final class MarkdownUtil {
     return false;
   }
 
-  private static boolean isLikelyImageUrl(String url) {
-    if (url == null || url.isBlank()) {
-      return false;
-    }
-    String lower = url.toLowerCase();
-    int queryIndex = lower.indexOf('?');
-    String path = queryIndex >= 0 ? lower.substring(0, queryIndex) : lower;
-    if (path.endsWith(".png") || path.endsWith(".jpg") || path.endsWith(".jpeg")
-        || path.endsWith(".gif") || path.endsWith(".webp") || path.endsWith(".svg")
-        || path.endsWith(".bmp") || path.endsWith(".tiff") || path.endsWith(".avif")) {
-      return true;
-    }
-    String query = queryIndex >= 0 ? lower.substring(queryIndex + 1) : "";
-    return query.contains("format=png") || query.contains("format=jpg")
-        || query.contains("format=jpeg") || query.contains("format=gif")
-        || query.contains("format=webp") || query.contains("format=svg")
-        || query.contains("format=avif");
-  }
-
-  private static String removeEmptyImagesSection(String markdown) {
-    String[] lines = markdown.split("\\R", -1);
-    StringBuilder sb = new StringBuilder();
-    int i = 0;
-    while (i < lines.length) {
-      String line = lines[i];
-      if (line.matches("^#{1,6}\\s*Images\\s*$")) {
-        int j = i + 1;
-        while (j < lines.length && lines[j].isBlank()) {
-          j++;
-        }
-        if (j >= lines.length || lines[j].matches("^#{1,6}\\s+.*$")) {
-          i = j;
-          continue;
-        }
-      }
-      sb.append(line);
-      if (i < lines.length - 1) {
-        sb.append("\n");
-      }
-      i++;
-    }
-    return sb.toString().replaceAll("\\n{3,}", "\n\n");
-  }
-
   private static String normalizeUrl(String url, String hostname) {
     if (url == null || url.isBlank()) {
       return url;
@@ -3,8 +3,14 @@ package com.declutter.util;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.util.Locale;
+import java.util.Set;
 
 public final class UrlUtil {
+  private static final Set<String> TRACKING_PARAMETERS = Set.of(
+      "fbclid", "gclid", "dclid", "gbraid", "wbraid", "msclkid", "yclid", "twclid", "igshid", "mc_cid", "mc_eid",
+      "_ga", "_gl", "_hsenc", "_hsmi", "mkt_tok", "oly_anon_id", "oly_enc_id", "vero_id", "ref_src", "ref_url");
+
   private UrlUtil() {}
 
   public static URL normalize(String value) {
@@ -18,4 +24,25 @@ public final class UrlUtil {
       throw new IllegalArgumentException("Invalid URL: " + value, e);
     }
   }
+
+  // Drops utm_* and other known tracking parameters from the query, keeping the rest and the fragment.
+  public static String withoutTracking(String url) {
+    int queryStart = url.indexOf('?');
+    if (queryStart < 0) {
+      return url;
+    }
+    int fragmentStart = url.indexOf('#', queryStart);
+    String query = fragmentStart < 0 ? url.substring(queryStart + 1) : url.substring(queryStart + 1, fragmentStart);
+    String fragment = fragmentStart < 0 ? "" : url.substring(fragmentStart);
+    StringBuilder kept = new StringBuilder();
+    for (String parameter : query.split("&")) {
+      int equals = parameter.indexOf('=');
+      String name = (equals < 0 ? parameter : parameter.substring(0, equals)).toLowerCase(Locale.ROOT);
+      if (parameter.isEmpty() || name.startsWith("utm_") || TRACKING_PARAMETERS.contains(name)) {
+        continue;
+      }
+      kept.append(kept.isEmpty() ? "" : "&").append(parameter);
+    }
+    return url.substring(0, queryStart) + (kept.isEmpty() ? "" : "?" + kept) + fragment;
+  }
 }
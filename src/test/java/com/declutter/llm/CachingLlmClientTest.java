@@ -0,0 +1,69 @@
+package com.declutter.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingLlmClientTest {
+  @TempDir
+  Path directory;
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  @Test
+  void answersRepeatedPromptFromCache() throws IOException {
+    LlmClient client = client(new LlmCache(directory), true);
+
+    LlmResult first = client.generate("system", "user", 100);
+    LlmResult second = client.generate("system", "user", 100);
+
+    assertEquals(1, calls.get());
+    assertFalse(first.cached());
+    assertTrue(second.cached());
+    assertEquals("# Answer 1", second.markdown());
+    assertEquals(12, second.inputTokens());
+    assertEquals(List.of(".md", ".meta"), suffixes());
+  }
+
+  @Test
+  void asksAgainForIncompleteAnswers() {
+    LlmClient client = client(new LlmCache(directory), false);
+
+    client.generate("system", "user", 100);
+    client.generate("system", "user", 100);
+
+    assertEquals(2, calls.get());
+  }
+
+  // The cache directory is a regular file here, so nothing can be written under it.
+  @Test
+  void answersWhenTheCacheCannotBeWritten() throws IOException {
+    Path file = Files.writeString(directory.resolve("not-a-directory"), "");
+    LlmClient client = client(new LlmCache(file), true);
+
+    assertEquals("# Answer 1", client.generate("system", "user", 100).markdown());
+    assertEquals("# Answer 2", client.generate("system", "user", 100).markdown());
+  }
+
+  private LlmClient client(LlmCache cache, boolean complete) {
+    LlmClient model = (systemPrompt, userPrompt, maxTokens) ->
+        new LlmResult("# Answer " + calls.incrementAndGet(), 12, 3, 15, null, null, complete, false);
+    return new CachingLlmClient(model, cache, Provider.OPENAI, "test-model");
+  }
+
+  private List<String> suffixes() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(path -> path.getFileName().toString().replaceFirst("^[0-9a-f]+", "")).sorted().toList();
+    }
+  }
+}
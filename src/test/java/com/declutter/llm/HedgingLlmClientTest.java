@@ -0,0 +1,84 @@
+package com.declutter.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgingLlmClientTest {
+  private static final int PERCENTILE = 90;
+  private static final int WARM_UP_CALLS = 100;
+  private static final int MEASURED_CALLS = 400;
+
+  // Primary latencies are Pareto distributed (50 ms minimum, shape 1.5, so p90 is about 230 ms) and the
+  // secondary answers at once. Every hedge then cancels the primary. Were those calls left out of the
+  // histogram, only calls faster than the delay would be recorded, and the delay would shrink to the minimum.
+  @Test
+  void hedgeRateStaysNearTheTailOnHeavyTailedLatency() throws Exception {
+    Random random = new Random(42);
+    long[] millis = new long[WARM_UP_CALLS + MEASURED_CALLS];
+    for (int i = 0; i < millis.length; i++) {
+      millis[i] = Math.min(5_000, Math.round(50 / Math.pow(1 - random.nextDouble(), 1 / 1.5)));
+    }
+    HedgingLlmClient client = new HedgingLlmClient(
+        (system, user, maxTokens) -> answer(millis[Integer.parseInt(user)]), "primary",
+        (system, user, maxTokens) -> answer(5), "secondary",
+        LatencyHistograms.inMemory(), PERCENTILE, Duration.ofSeconds(2), Duration.ofMillis(1));
+
+    run(client, 0, WARM_UP_CALLS);
+    int hedgedBefore = client.hedged();
+    run(client, WARM_UP_CALLS, millis.length);
+    double rate = (client.hedged() - hedgedBefore) / (double) MEASURED_CALLS;
+
+    assertTrue(rate > 0.04 && rate < 0.15, "hedge rate " + rate);
+    assertTrue(client.hedgeDelay().toMillis() > 180, "hedge delay " + client.hedgeDelay());
+  }
+
+  @Test
+  void fastPrimaryIsNotHedged() {
+    HedgingLlmClient client = new HedgingLlmClient(
+        (system, user, maxTokens) -> answer(1), "primary",
+        (system, user, maxTokens) -> answer(1), "secondary",
+        LatencyHistograms.inMemory(), PERCENTILE, Duration.ofSeconds(2), Duration.ofMillis(1));
+
+    assertEquals("# Answer", client.generate("system", "0", 100).markdown());
+    assertEquals(0, client.hedged());
+  }
+
+  // Calls run 16 at a time to keep the test short; each still waits for its own race.
+  private static void run(HedgingLlmClient client, int from, int to)
+      throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<LlmResult>> results = new ArrayList<>();
+      for (int i = from; i < to; i++) {
+        String user = String.valueOf(i);
+        results.add(executor.submit(() -> client.generate("system", user, 100)));
+      }
+      for (Future<LlmResult> result : results) {
+        result.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static LlmResult answer(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("cancelled", e);
+    }
+    return new LlmResult("# Answer", 10, 2, 12, null, null, true, false);
+  }
+}
@@ -0,0 +1,76 @@
+package com.declutter.llm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UrlAliasesTest {
+  private static final String ARTICLE = "/articles/2024/10/a-long-title-for-the-story";
+
+  @Test
+  void repeatedUrlsShareOneReference() {
+    String markdown = "[one](https://example.com" + ARTICLE + ") and [again](https://example.com" + ARTICLE + ").";
+    UrlAliases aliases = UrlAliases.of(markdown);
+
+    assertEquals("[one](u1) and [again](u1).", aliases.aliased());
+    assertEquals(1, aliases.count());
+    assertEquals(markdown, aliases.restore(aliases.aliased()));
+    assertTrue(aliases.estimatedTokensSaved() > 0);
+  }
+
+  @Test
+  void aliasesImageTargetsAndKeepsTitles() {
+    String markdown = "[![Chart](https://cdn.example.com/img/chart.png \"Sales\")](https://example.com" + ARTICLE + ")";
+    UrlAliases aliases = UrlAliases.of(markdown);
+
+    assertEquals("[![Chart](u1 \"Sales\")](u2)", aliases.aliased());
+    assertEquals(markdown, aliases.restore(aliases.aliased()));
+  }
+
+  @Test
+  void keepsShortAndRelativeTargets() {
+    String markdown = "[a](/local/page/with/a/long/path) and [b](http://a.io) and [c](#top)";
+
+    assertEquals(markdown, UrlAliases.of(markdown).aliased());
+    assertEquals(0, UrlAliases.of(markdown).count());
+  }
+
+  @Test
+  void aliasesUrlsWithParentheses() {
+    String markdown = "[Mercury](https://en.wikipedia.org/wiki/Mercury_(planet)) is small.";
+    UrlAliases aliases = UrlAliases.of(markdown);
+
+    assertEquals("[Mercury](u1) is small.", aliases.aliased());
+    assertEquals(markdown, aliases.restore(aliases.aliased()));
+  }
+
+  // The answer to such a prompt could not tell the page's own u1 from ours.
+  @Test
+  void leavesMarkdownWithReferenceTargetsAlone() {
+    String markdown = "[short](u1) and [long](https://example.com" + ARTICLE + ")";
+    UrlAliases aliases = UrlAliases.of(markdown);
+
+    assertEquals(markdown, aliases.aliased());
+    assertEquals(0, aliases.count());
+    assertEquals("[x](u1)", aliases.restore("[x](u1)"));
+  }
+
+  @Test
+  void leavesInventedReferences() {
+    UrlAliases aliases = UrlAliases.of("[a](https://example.com" + ARTICLE + ")");
+
+    assertEquals("[a](https://example.com" + ARTICLE + ") [b](u2) [c](u0) [d](u1x)",
+        aliases.restore("[a](u1) [b](u2) [c](u0) [d](u1x)"));
+  }
+
+  @Test
+  void dropsTrackingParametersAndKeepsFragment() {
+    UrlAliases aliases = UrlAliases.of("[a](https://example.com/a?utm_source=x&id=3&FBCLID=y#part-2) "
+        + "[b](https://example.com/b?gclid=1&utm_medium=m#top)");
+
+    assertEquals("[a](u1) [b](u2)", aliases.aliased());
+    assertEquals("[a](https://example.com/a?id=3#part-2) [b](https://example.com/b#top)",
+        aliases.restore(aliases.aliased()));
+  }
+}
@@ -0,0 +1,58 @@
+package com.declutter.scrape;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BoilerplateFilterTest {
+  private static final String PROSE = "<p>Hedging sends a slow request to a second provider, and whichever answers "
+      + "first wins, which cuts the tail latency at the cost of a few extra calls, most of them cheap.</p>";
+
+  private static final String PAGE = "<html><body>"
+      + "<nav><a href='/'>Home</a><a href='/blog'>Blog</a></nav>"
+      + "<article class='post'>"
+      + "<h1>Tail latency</h1>" + PROSE + PROSE + PROSE
+      + "<div class='sources'><ul>"
+      + "<li><a href='https://example.com/tail'>The Tail at Scale</a></li>"
+      + "<li><a href='https://example.com/hedge'>Hedged requests</a></li>"
+      + "</ul></div>"
+      + "<div class='related-posts'><ul>"
+      + "<li><a href='/a'>Another post</a></li><li><a href='/b'>Yet another post</a></li>"
+      + "</ul></div>"
+      + PROSE
+      + "</article>"
+      + "<footer><a href='/about'>About</a></footer>"
+      + "</body></html>";
+
+  @Test
+  void offLeavesThePageAlone() {
+    Document document = Jsoup.parse(PAGE);
+
+    BoilerplateFilter.Result result = BoilerplateFilter.apply(document, BoilerplateFilter.Level.OFF);
+
+    assertEquals(result.charsBefore(), result.charsAfter());
+    assertNotNull(document.selectFirst("nav"));
+  }
+
+  @Test
+  void mediumKeepsInArticleLinkListsButDropsChromeRails() {
+    Document document = Jsoup.parse(PAGE);
+
+    BoilerplateFilter.apply(document, BoilerplateFilter.Level.MEDIUM);
+
+    assertNotNull(document.selectFirst("a[href=https://example.com/tail]"), document.body().html());
+    assertNull(document.selectFirst(".related-posts"));
+    assertNull(document.selectFirst("nav"));
+    assertNull(document.selectFirst("footer"));
+    assertEquals(4, document.select("article p").size());
+  }
+
+  @Test
+  void parsesLevelsByName() {
+    assertEquals(BoilerplateFilter.Level.HIGH, BoilerplateFilter.Level.from("High"));
+  }
+}
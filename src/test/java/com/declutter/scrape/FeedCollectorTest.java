@@ -0,0 +1,132 @@
+package com.declutter.scrape;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Serves the feed fixtures from a loopback server, with {{base}} in them pointing back at it.
+class FeedCollectorTest {
+  private final Set<String> requested = ConcurrentHashMap.newKeySet();
+  private HttpServer server;
+  private String base;
+  private HttpFetcher fetcher;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    base = "http://127.0.0.1:" + server.getAddress().getPort();
+    server.createContext("/", exchange -> {
+      String name = exchange.getRequestURI().getPath().substring(1);
+      requested.add(name);
+      try (InputStream input = FeedReaderTest.class.getResourceAsStream("/feeds/" + name)) {
+        if (input == null) {
+          exchange.sendResponseHeaders(404, -1);
+          return;
+        }
+        byte[] body = new String(input.readAllBytes(), StandardCharsets.UTF_8)
+            .replace("{{base}}", base)
+            .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+          output.write(body);
+        }
+      } finally {
+        exchange.close();
+      }
+    });
+    server.start();
+    fetcher = new HttpFetcher("declutter-test", HttpFetcher.Settings.defaults(), null,
+        new HostScheduler(new HostScheduler.Settings(1000, 4, Duration.ZERO)));
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  void followsNestedSitemapIndexes() throws InterruptedException {
+    List<String> pages = collect(FeedCollector.Filter.none(), "sitemap-index.xml");
+
+    assertEquals(List.of(
+        "https://example.com/posts/hedging",
+        "https://example.com/about",
+        "https://example.com/posts/caching",
+        "https://example.com/posts/archived",
+        "https://example.com/posts/undated"), pages);
+    assertEquals(Set.of("sitemap-index.xml", "nested-index.xml", "pages.xml", "posts-2024.xml", "posts-2019.xml"),
+        requested);
+  }
+
+  @Test
+  void sinceDropsOldAndUndatedPagesAndSkipsOldSitemaps() throws InterruptedException {
+    FeedCollector.Filter filter = new FeedCollector.Filter(Instant.parse("2024-01-01T00:00:00Z"), null, null, 0);
+
+    List<String> pages = collect(filter, "sitemap-index.xml");
+
+    assertEquals(List.of(
+        "https://example.com/posts/hedging",
+        "https://example.com/about",
+        "https://example.com/posts/caching"), pages);
+    // Last modified before the cutoff, so it cannot hold anything newer.
+    assertFalse(requested.contains("posts-2019.xml"));
+    // Undated children of an index are still followed.
+    assertTrue(requested.contains("pages.xml"));
+  }
+
+  @Test
+  void deduplicatesAcrossFeedsKeepingTheNewestDate() throws InterruptedException {
+    List<String> pages = collect(FeedCollector.Filter.none(), "sitemap-index.xml", "rss.xml", "atom.xml");
+
+    assertEquals(List.of(
+        "https://example.com/posts/caching",
+        "https://example.com/posts/hedging",
+        "https://example.com/posts/streaming",
+        "https://example.com/about",
+        "https://example.com/posts/chunking",
+        "https://example.com/posts/archived",
+        "https://example.com/posts/undated"), pages);
+  }
+
+  @Test
+  void appliesIncludeExcludeAndLimitAfterOrdering() throws InterruptedException {
+    FeedCollector.Filter filter =
+        new FeedCollector.Filter(null, Pattern.compile("/posts/"), Pattern.compile("streaming"), 2);
+
+    List<String> pages = collect(filter, "rss.xml", "atom.xml");
+
+    assertEquals(List.of("https://example.com/posts/caching", "https://example.com/posts/hedging"), pages);
+  }
+
+  @Test
+  void skipsSourcesThatFail() throws InterruptedException {
+    List<String> pages = collect(FeedCollector.Filter.none(), "missing.xml", "rss.xml");
+
+    assertEquals(List.of("https://example.com/posts/hedging", "https://example.com/posts/streaming"), pages);
+  }
+
+  private List<String> collect(FeedCollector.Filter filter, String... names) throws InterruptedException {
+    List<String> sources = Arrays.stream(names).map(name -> base + "/" + name).toList();
+    return new FeedCollector(fetcher, filter).collect(sources);
+  }
+}
@@ -0,0 +1,115 @@
+package com.declutter.scrape;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FeedReaderTest {
+
+  @Test
+  void parsesSitemapAndFeedDateShapes() {
+    assertEquals(Instant.parse("2024-06-20T08:00:00Z"), FeedReader.parseDate("2024-06-20T08:00:00Z"));
+    assertEquals(Instant.parse("2024-05-10T10:00:00Z"), FeedReader.parseDate(" 2024-05-10T12:00:00+02:00 "));
+    assertEquals(Instant.parse("2024-05-10T12:00:00Z"), FeedReader.parseDate("2024-05-10T12:00:00"));
+    assertEquals(Instant.parse("2024-03-02T00:00:00Z"), FeedReader.parseDate("2024-03-02"));
+    assertEquals(Instant.parse("2024-05-01T00:00:00Z"), FeedReader.parseDate("2024-05"));
+    assertEquals(Instant.parse("2024-06-18T08:00:00Z"), FeedReader.parseDate("Tue, 18 Jun 2024 08:00:00 GMT"));
+    assertEquals(Instant.parse("2024-06-01T08:30:00Z"), FeedReader.parseDate("Sat, 1 Jun 2024 10:30:00 +0200"));
+  }
+
+  @Test
+  void unparseableDatesAreNull() {
+    assertNull(FeedReader.parseDate(null));
+    assertNull(FeedReader.parseDate("  "));
+    assertNull(FeedReader.parseDate("yesterday"));
+    assertNull(FeedReader.parseDate("18/06/2024"));
+  }
+
+  @Test
+  void readsSitemapIndexEntriesAsSitemaps() throws IOException {
+    List<FeedReader.Entry> entries = read("sitemap-index.xml");
+
+    assertEquals(List.of(
+        new FeedReader.Entry("{{base}}/posts-2024.xml", Instant.parse("2024-06-30T00:00:00Z"), true),
+        new FeedReader.Entry("{{base}}/nested-index.xml", null, true),
+        new FeedReader.Entry("{{base}}/posts-2019.xml", Instant.parse("2019-12-31T23:00:00Z"), true)), entries);
+  }
+
+  @Test
+  void ignoresImageLocationsInsideSitemapUrls() throws IOException {
+    List<FeedReader.Entry> entries = read("posts-2024.xml");
+
+    assertEquals(List.of(
+        new FeedReader.Entry("https://example.com/posts/hedging", Instant.parse("2024-06-20T08:00:00Z"), false),
+        new FeedReader.Entry("https://example.com/posts/caching", Instant.parse("2024-03-02T00:00:00Z"), false),
+        new FeedReader.Entry("https://example.com/posts/undated", null, false)), entries);
+  }
+
+  @Test
+  void readsRssLinksGuidsAndLatestDate() throws IOException {
+    List<FeedReader.Entry> entries = read("rss.xml");
+
+    // The item without a link or a permalink guid is dropped; the channel link is not an entry.
+    assertEquals(List.of(
+        new FeedReader.Entry("https://example.com/posts/hedging", Instant.parse("2024-06-18T08:00:00Z"), false),
+        new FeedReader.Entry("https://example.com/posts/streaming", Instant.parse("2024-06-05T09:00:00Z"), false)),
+        entries);
+  }
+
+  @Test
+  void readsAtomAlternateLinks() throws IOException {
+    List<FeedReader.Entry> entries = read("atom.xml");
+
+    assertEquals(List.of(
+        new FeedReader.Entry("https://example.com/posts/caching", Instant.parse("2024-07-01T09:00:00Z"), false),
+        new FeedReader.Entry("https://example.com/posts/chunking", Instant.parse("2023-12-24T18:00:00Z"), false)),
+        entries);
+  }
+
+  @Test
+  void readsGzippedSitemaps() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (InputStream input = fixture("pages.xml"); GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      input.transferTo(gzip);
+    }
+    List<FeedReader.Entry> entries = new ArrayList<>();
+    FeedReader.read(new ByteArrayInputStream(compressed.toByteArray()), entries::add);
+
+    assertEquals(List.of(
+        new FeedReader.Entry("https://example.com/about", Instant.parse("2024-05-10T10:00:00Z"), false)), entries);
+  }
+
+  @Test
+  void rejectsMalformedFeeds() {
+    InputStream input = new ByteArrayInputStream("<urlset><url><loc>x</url>".getBytes());
+
+    assertThrows(IOException.class, () -> FeedReader.read(input, entry -> {}));
+  }
+
+  private static List<FeedReader.Entry> read(String name) throws IOException {
+    List<FeedReader.Entry> entries = new ArrayList<>();
+    try (InputStream input = fixture(name)) {
+      FeedReader.read(input, entries::add);
+    }
+    return entries;
+  }
+
+  static InputStream fixture(String name) {
+    InputStream input = FeedReaderTest.class.getResourceAsStream("/feeds/" + name);
+    if (input == null) {
+      throw new IllegalArgumentException("Missing fixture " + name);
+    }
+    return input;
+  }
+}
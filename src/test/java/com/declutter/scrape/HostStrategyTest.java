@@ -0,0 +1,73 @@
+package com.declutter.scrape;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostStrategyTest {
+  private static final String URL = "https://example.com/a/story";
+
+  @Test
+  void oneFastFetchIsTrusted() {
+    HostStrategy strategy = HostStrategy.inMemory(new Random(1));
+
+    strategy.record(URL, HostStrategy.Outcome.FAST_OK);
+
+    assertEquals(Optional.of(HostStrategy.Outcome.FAST_OK), strategy.lookup("https://example.com/other"));
+  }
+
+  @Test
+  void oneBrowserObservationDoesNotSkipTheFastFetch() {
+    HostStrategy strategy = HostStrategy.inMemory(new Random(1));
+
+    strategy.record(URL, HostStrategy.Outcome.NEEDS_BROWSER);
+
+    assertTrue(strategy.lookup(URL).isEmpty());
+  }
+
+  @Test
+  void agreeingObservationsSkipTheFastFetchExceptForOccasionalProbes() {
+    HostStrategy strategy = HostStrategy.inMemory(new Random(7));
+    strategy.record(URL, HostStrategy.Outcome.BLOCKED);
+    strategy.record(URL, HostStrategy.Outcome.BLOCKED);
+
+    int lookups = 10_000;
+    int probes = 0;
+    for (int i = 0; i < lookups; i++) {
+      Optional<HostStrategy.Outcome> outcome = strategy.lookup(URL);
+      if (outcome.isEmpty()) {
+        probes++;
+      } else {
+        assertEquals(HostStrategy.Outcome.BLOCKED, outcome.get());
+      }
+    }
+
+    double expected = (double) lookups / HostStrategy.PROBE_ONE_IN;
+    assertTrue(Math.abs(probes - expected) < expected * 0.2, "probes: " + probes);
+  }
+
+  @Test
+  void aProbeThatWorksReplacesTheBrowserOutcome() {
+    HostStrategy strategy = HostStrategy.inMemory(new Random(1));
+    strategy.record(URL, HostStrategy.Outcome.NEEDS_BROWSER);
+    strategy.record(URL, HostStrategy.Outcome.NEEDS_BROWSER);
+
+    strategy.record(URL, HostStrategy.Outcome.FAST_OK);
+
+    assertEquals(Optional.of(HostStrategy.Outcome.FAST_OK), strategy.lookup(URL));
+  }
+
+  @Test
+  void persistsAcrossInstances(@TempDir Path directory) {
+    Path file = directory.resolve("strategy.properties");
+    HostStrategy.persistent(file).record(URL, HostStrategy.Outcome.JS_NOT_NEEDED);
+
+    assertEquals(Optional.of(HostStrategy.Outcome.JS_NOT_NEEDED), HostStrategy.persistent(file).lookup(URL));
+  }
+}
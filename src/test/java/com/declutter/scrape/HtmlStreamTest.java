@@ -0,0 +1,47 @@
+package com.declutter.scrape;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HtmlStreamTest {
+  private static final String PAGE = "<html><body><p>Hello</p><script>var x = 1;</script></body></html>";
+
+  @Test
+  void bodyOfExactlyTheCapIsNotTruncated() throws IOException {
+    byte[] bytes = PAGE.getBytes(StandardCharsets.UTF_8);
+
+    HtmlStream.Parsed parsed = parse(bytes, bytes.length);
+
+    assertFalse(parsed.truncated());
+    assertEquals(bytes.length, parsed.bytesRead());
+    assertEquals("Hello", parsed.document().select("p").text());
+  }
+
+  @Test
+  void longerBodyIsTruncatedAtTheCap() throws IOException {
+    byte[] bytes = PAGE.getBytes(StandardCharsets.UTF_8);
+
+    HtmlStream.Parsed parsed = parse(bytes, bytes.length - 1);
+
+    assertTrue(parsed.truncated());
+    assertEquals(bytes.length - 1, parsed.bytesRead());
+  }
+
+  @Test
+  void dropsScriptsWhileParsing() throws IOException {
+    HtmlStream.Parsed parsed = parse(PAGE.getBytes(StandardCharsets.UTF_8), 1 << 20);
+
+    assertTrue(parsed.document().select("script").isEmpty());
+  }
+
+  private static HtmlStream.Parsed parse(byte[] bytes, long maxBytes) throws IOException {
+    return HtmlStream.parse(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, "https://example.com/", maxBytes);
+  }
+}
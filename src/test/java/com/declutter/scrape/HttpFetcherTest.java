@@ -0,0 +1,106 @@
+package com.declutter.scrape;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpFetcherTest {
+  private static final String PAGE = "<html><body><article><p>" + "word ".repeat(200) + "</p></article></body></html>";
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private HttpServer server;
+  private String url;
+
+  @TempDir
+  Path cacheDirectory;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    url = "http://127.0.0.1:" + server.getAddress().getPort() + "/article";
+    server.createContext("/article", exchange -> {
+      requests.incrementAndGet();
+      exchange.getResponseHeaders().set("Cache-Control", "max-age=3600");
+      send(exchange);
+    });
+    // Always stale but revalidatable, so a cached copy would be kept and revalidated rather than refetched.
+    server.createContext("/revalidated", exchange -> {
+      exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+      exchange.getResponseHeaders().set("ETag", "\"v1\"");
+      send(exchange);
+    });
+    server.start();
+  }
+
+  private static void send(HttpExchange exchange) throws IOException {
+    byte[] body = PAGE.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(body);
+    }
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  void cachesAPageThatFitsTheCap() throws Exception {
+    HttpFetcher fetcher = fetcher(PAGE.length());
+
+    assertEquals(HttpFetcher.CacheStatus.MISS, fetcher.fetch(url).cacheStatus());
+    assertEquals(HttpFetcher.CacheStatus.HIT, fetcher.fetch(url).cacheStatus());
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  void doesNotCacheATruncatedPage() throws Exception {
+    HttpFetcher fetcher = fetcher(PAGE.length() / 2);
+
+    assertEquals(HttpFetcher.CacheStatus.MISS, fetcher.fetch(url).cacheStatus());
+    HttpFetcher.Result again = fetcher.fetch(url);
+
+    assertEquals(HttpFetcher.CacheStatus.MISS, again.cacheStatus());
+    assertEquals(2, requests.get());
+  }
+
+  @Test
+  void dropsAnOlderCopyWhenThePageComesBackTruncated() throws Exception {
+    HttpCache cache = new HttpCache(cacheDirectory);
+    String revalidated = url.replace("/article", "/revalidated");
+    fetcher(cache, PAGE.length()).fetch(revalidated);
+    assertTrue(cache.get(revalidated).isPresent());
+
+    fetcher(cache, PAGE.length() / 2).fetch(revalidated);
+
+    assertTrue(cache.get(revalidated).isEmpty());
+  }
+
+  private HttpFetcher fetcher(long maxPageBytes) {
+    return fetcher(new HttpCache(cacheDirectory), maxPageBytes);
+  }
+
+  private static HttpFetcher fetcher(HttpCache cache, long maxPageBytes) {
+    HttpFetcher.Settings settings =
+        new HttpFetcher.Settings(Duration.ofSeconds(5), Duration.ofSeconds(5), 4, maxPageBytes);
+    return new HttpFetcher("declutter-test", settings, cache,
+        new HostScheduler(new HostScheduler.Settings(1000, 4, Duration.ZERO)));
+  }
+}
@@ -0,0 +1,64 @@
+package com.declutter.scrape;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class PaginationTest {
+
+  @Test
+  void followsNumberedAndNextLinksOfTheSameArticle() {
+    Document document = Jsoup.parse("""
+        <article><p>Part one</p></article>
+        <nav class="pagination"><a href="?page=2">2</a><a href="?page=3">3</a><a href="/a/story/page/2/">Next</a></nav>
+        """, "https://example.com/a/story");
+
+    List<String> pages = next(document, "https://example.com/a/story");
+
+    assertEquals(List.of("https://example.com/a/story?page=2", "https://example.com/a/story?page=3"), pages);
+  }
+
+  @Test
+  void ignoresRelNextIntoAnotherArticle() {
+    Document document = Jsoup.parse("""
+        <head><link rel="next" href="https://example.com/a/another-story"></head>
+        <article><p>Whole story</p></article>
+        """, "https://example.com/a/story");
+
+    assertEquals(List.of(), next(document, "https://example.com/a/story"));
+  }
+
+  @Test
+  void followsRelNextWithinTheArticle() {
+    Document document = Jsoup.parse("""
+        <head><link rel="next" href="https://example.com/a/story/2/"></head>
+        <article><p>Part one</p></article>
+        """, "https://example.com/a/story");
+
+    assertEquals(List.of("https://example.com/a/story/2/"), next(document, "https://example.com/a/story"));
+  }
+
+  @Test
+  void wordpressPostIdsAreNotPageNumbers() {
+    assertNotEquals(Pagination.key("https://example.com/?p=123"), Pagination.key("https://example.com/?p=124"));
+    assertEquals(Pagination.key("https://example.com/a?page=1"), Pagination.key("https://example.com/a"));
+
+    Document document = Jsoup.parse("""
+        <head><link rel="next" href="https://example.com/?p=124"></head>
+        <article><p>Post</p></article>
+        """, "https://example.com/?p=123");
+
+    assertEquals(List.of(), next(document, "https://example.com/?p=123"));
+  }
+
+  private static List<String> next(Document document, String url) {
+    return Pagination.nextPages(document, url, new HashSet<>(Set.of(Pagination.key(url))), 5);
+  }
+}
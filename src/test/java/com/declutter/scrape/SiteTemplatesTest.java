@@ -0,0 +1,94 @@
+package com.declutter.scrape;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SiteTemplatesTest {
+  private static final String HEADER = "Example News: world, business, science, culture and opinion";
+  private static final String FOOTER = "Copyright Example News, all rights reserved. Terms and privacy.";
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void stripsBlocksSeenOnEarlierPages() {
+    SiteTemplates templates = SiteTemplates.inMemory();
+    templates.apply(page("first", ""), "https://example.com/first");
+    templates.apply(page("second", ""), "https://example.com/second");
+
+    Document third = page("third", "");
+    SiteTemplates.Result result = templates.apply(third, "https://example.com/third");
+
+    assertEquals(2, result.blocksRemoved());
+    assertFalse(third.text().contains(HEADER));
+    assertTrue(third.text().contains("article third"));
+  }
+
+  // Share links, http and fragments reach the same article; counting each as a page would make it template.
+  @Test
+  void learnsEachArticleOnce() throws IOException {
+    SiteTemplates templates = SiteTemplates.persistent(directory);
+    templates.apply(page("story", ""), "https://example.com/story");
+    templates.apply(page("story", ""), "https://example.com/story?utm_source=feed&fbclid=abc");
+    templates.apply(page("story", ""), "http://example.com/story#comments");
+    templates.apply(page("story", "https://example.com/story"), "https://example.com/amp/story?ref_src=twsrc");
+
+    assertEquals("1", pages());
+
+    templates.apply(page("other", ""), "https://example.com/other?utm_medium=social");
+
+    assertEquals("2", pages());
+  }
+
+  @Test
+  void ignoresCanonicalLinksToOtherHosts() throws IOException {
+    SiteTemplates templates = SiteTemplates.persistent(directory);
+    templates.apply(page("one", "https://syndicated.example.org/story"), "https://example.com/one");
+    templates.apply(page("two", "https://syndicated.example.org/story"), "https://example.com/two");
+
+    assertEquals("2", pages());
+  }
+
+  // The host file is a directory here, so it can be neither read nor replaced.
+  @Test
+  void keepsWorkingWhenTheTemplateCannotBeReadOrWritten() throws IOException {
+    Files.createDirectories(directory.resolve("example.com.properties"));
+    SiteTemplates templates = SiteTemplates.persistent(directory);
+    templates.apply(page("first", ""), "https://example.com/first");
+    templates.apply(page("second", ""), "https://example.com/second");
+
+    Document third = page("third", "");
+
+    assertEquals(2, templates.apply(third, "https://example.com/third").blocksRemoved());
+  }
+
+  private String pages() throws IOException {
+    Properties props = new Properties();
+    try (InputStream input = Files.newInputStream(directory.resolve("example.com.properties"))) {
+      props.load(input);
+    }
+    return props.getProperty("pages");
+  }
+
+  private static Document page(String article, String canonical) {
+    String head = canonical.isEmpty() ? "" : "<link rel=\"canonical\" href=\"" + canonical + "\">";
+    return Jsoup.parse("<html><head>" + head + "</head><body>"
+        + "<header><p>" + HEADER + "</p></header>"
+        + "<article><p>This is the article " + article + ". " + "It has a long body of its own. ".repeat(8) + "</p>"
+        + "</article>"
+        + "<footer><p>" + FOOTER + "</p></footer>"
+        + "</body></html>", "https://example.com/");
+  }
+}
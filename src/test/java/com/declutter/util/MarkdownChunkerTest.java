@@ -0,0 +1,122 @@
+package com.declutter.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarkdownChunkerTest {
+  private static final String ARTICLE = """
+      # Streaming large answers
+
+      The first paragraph explains why a single request is too slow for a long article and what we do instead.
+
+      ## Setup
+
+      - install the command line tool
+      - point it at a provider
+      - pick a chunk budget
+
+      ```java
+      public final class Example {
+        private Example() {}
+
+        static int answer() {
+          return 42;
+        }
+
+        static String banner() {
+          return "a single line of code that is much longer than any of the small budgets used by this test, so it has to be cut between words";
+        }
+      }
+      ```
+
+      | Column | Meaning |
+      | ------ | ------- |
+      | alpha  | first   |
+      | beta   | second  |
+
+      ~~~~
+      plain fenced text with a ``` inside it
+      ~~~~
+
+      ## Results
+
+      Stitching joins every answer back together, dropping the block that was repeated at each seam for context.
+      """ + IntStream.rangeClosed(1, 40)
+      .mapToObj(i -> "Paragraph number " + i + " talks about topic " + (i * 7) + ".")
+      .collect(Collectors.joining("\n\n"));
+
+  @Test
+  void shortTextIsOnePiece() {
+    assertEquals(List.of("Just a line."), MarkdownChunker.split("Just a line.", 100));
+    assertEquals(List.of(""), MarkdownChunker.split(null, 100));
+  }
+
+  @Test
+  void rejectsEmptyBudget() {
+    assertThrows(IllegalArgumentException.class, () -> MarkdownChunker.split(ARTICLE, 0));
+  }
+
+  // With the model answering each piece verbatim, stitching the pieces gives back the original text.
+  @Test
+  void stitchUndoesSplitForEveryBudget() {
+    for (int budget = 16; budget <= MarkdownChunker.estimateTokens(ARTICLE) + 1; budget++) {
+      List<String> pieces = MarkdownChunker.split(ARTICLE, budget);
+
+      assertEquals(squash(ARTICLE), squash(MarkdownChunker.stitch(pieces)), "budget " + budget);
+    }
+  }
+
+  @Test
+  void stitchRestoresBlankLinesBetweenBlocks() {
+    List<String> pieces = MarkdownChunker.split(ARTICLE, 60);
+
+    assertTrue(pieces.size() > 1);
+    assertEquals(ARTICLE.strip(), MarkdownChunker.stitch(pieces));
+  }
+
+  @Test
+  void oversizedCodeBlockIsClosedAndReopenedAtEachCut() {
+    for (int budget = 1; budget <= 40; budget++) {
+      List<String> pieces = MarkdownChunker.split(ARTICLE, budget);
+
+      for (String piece : pieces) {
+        assertFalse(leavesFenceOpen(piece), "budget " + budget + ": " + piece);
+        if (piece.contains("return 42;") && !piece.contains("public final class")) {
+          assertTrue(piece.startsWith("```java\n") || piece.contains("\n```java\n"), "budget " + budget);
+        }
+      }
+    }
+  }
+
+  @Test
+  void stitchKeepsSeparateCodeBlocksApart() {
+    String joined = MarkdownChunker.stitch(List.of("```java\nint a;\n```", "```python\nb = 1\n```"));
+
+    assertEquals("```java\nint a;\n```\n\n```python\nb = 1\n```", joined);
+  }
+
+  private static boolean leavesFenceOpen(String piece) {
+    String open = null;
+    for (String line : piece.split("\n")) {
+      String trimmed = line.strip();
+      if (open == null && (trimmed.startsWith("```") || trimmed.startsWith("~~~"))) {
+        open = trimmed.replaceAll("^(`+|~+).*", "$1");
+      } else if (open != null && trimmed.equals(open)) {
+        open = null;
+      }
+    }
+    return open != null;
+  }
+
+  private static String squash(String text) {
+    return text.replaceAll("\\s+", "");
+  }
+}
@@ -0,0 +1,64 @@
+package com.declutter.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MarkdownCleanerTest {
+  private final MarkdownCleaner cleaner = MarkdownCleaner.defaults();
+
+  @Test
+  void collapsesBlankRuns() {
+    assertEquals("a\n\nb\n", cleaner.clean("a\n\n\n\n\nb\n"));
+    assertEquals("a\n\nb", cleaner.clean("a\r\n\r\n\r\n\r\nb"));
+    assertEquals("a\nb", cleaner.clean("a\nb"));
+  }
+
+  // Like the \n{3,} collapse it replaced, a line holding spaces is not blank.
+  @Test
+  void keepsWhitespaceLines() {
+    assertEquals("a\n\n  \n\nb", cleaner.clean("a\n\n  \n\n\nb"));
+  }
+
+  @Test
+  void keepsBlankOrMissingInput() {
+    assertEquals("", cleaner.clean(null));
+    assertEquals("  \n", cleaner.clean("  \n"));
+  }
+
+  @Test
+  void dropsEmptyImagesSectionBeforeHeading() {
+    String markdown = "# Title\n\nText\n\n## Images\n\n\n## Next\nBody\n";
+
+    assertEquals("# Title\n\nText\n\n## Next\nBody\n", cleaner.clean(markdown));
+  }
+
+  @Test
+  void dropsEmptyImagesSectionAtEnd() {
+    assertEquals("Text\n\n", cleaner.clean("Text\n\n## Images\n\n"));
+    // Without a final line break there is none to keep after the dropped heading.
+    assertEquals("Text", cleaner.clean("Text\n### Images"));
+  }
+
+  @Test
+  void keepsImagesSectionWithContent() {
+    String markdown = "## Images\n\n![Chart](https://example.com/chart.png)\n\n## Next\n";
+
+    assertEquals(markdown, cleaner.clean(markdown));
+  }
+
+  @Test
+  void dropsImageSyntaxAroundNonImageLinks() {
+    String images = "![pic](https://example.com/a.PNG?w=2 \"Pic\") and ![q](https://cdn.example.com/i?format=webp).";
+
+    assertEquals("See  and " + images, cleaner.clean("See ![page](https://example.com/post) and " + images));
+  }
+
+  // A section whose only image pointed at a page is empty once that image is gone.
+  @Test
+  void dropsImagesSectionEmptiedByNonImageLinks() {
+    String markdown = "Text\n\n## Images\n\n![x](https://example.com/page)\n\n## Next\n";
+
+    assertEquals("Text\n\n## Next\n", cleaner.clean(markdown));
+  }
+}
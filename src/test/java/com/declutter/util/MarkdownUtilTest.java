@@ -0,0 +1,91 @@
+package com.declutter.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarkdownUtilTest {
+  @Test
+  void expandsImageInsideLink() {
+    String markdown = MarkdownUtil.htmlToMarkdown("""
+        <html><body>
+        <p>See <a href="/post"><img src="/pic.png" alt="Chart"></a> here.</p>
+        </body></html>
+        """, "example.com");
+
+    assertEquals("See [![Chart](https://example.com/pic.png)](https://example.com/post) here.", markdown.strip());
+  }
+
+  @Test
+  void expandsLinkAndImageInsideTableCell() {
+    String markdown = MarkdownUtil.htmlToMarkdown("""
+        <html><body>
+        <table>
+          <tr><th>Name</th><th>Link</th></tr>
+          <tr><td>Docs</td><td><a href="https://docs.example.org/a">manual</a></td></tr>
+          <tr><td><img src="/icon.png" alt="Icon"></td><td><a href="/b"><img src="/b.png" alt="B"></a></td></tr>
+        </table>
+        </body></html>
+        """, "example.com");
+
+    assertEquals("""
+        | Name | Link |
+        | --- | --- |
+        | Docs | [manual](https://docs.example.org/a) |
+        | ![Icon](https://example.com/icon.png) | [![B](https://example.com/b.png)](https://example.com/b) |""",
+        markdown.strip());
+  }
+
+  // Many links must not leave placeholders behind, whatever their number of digits.
+  @Test
+  void leavesNoPlaceholders() {
+    String markdown = MarkdownUtil.htmlToMarkdown(linkPage(1_200), "example.com");
+
+    assertFalse(markdown.contains("@@"));
+    assertTrue(markdown.contains("[Link 0](https://example.com/p/0)"));
+    assertTrue(markdown.contains("[Link 1199](https://example.com/p/1199)"));
+  }
+
+  // Synthetic benchmark: links in lists under headings, best of 3 after a warm-up. Putting placeholders back
+  // with one String.replace each made 20k links about 12x slower than 5k; a linear pass stays near 4x.
+  @Test
+  void growsLinearlyWithLinkCount() {
+    MarkdownUtil.htmlToMarkdown(linkPage(5_000), "example.com");
+    Map<Integer, Long> millis = new LinkedHashMap<>();
+    for (int links : new int[] {1_000, 5_000, 20_000}) {
+      millis.put(links, bestOf(3, linkPage(links)));
+    }
+    System.out.println("htmlToMarkdown ms by link count: " + millis);
+
+    assertTrue(millis.get(20_000) < 8 * millis.get(5_000) + 100, "times " + millis);
+  }
+
+  private static long bestOf(int runs, String html) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < runs; i++) {
+      long start = System.nanoTime();
+      MarkdownUtil.htmlToMarkdown(html, "example.com");
+      best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+    }
+    return best;
+  }
+
+  private static String linkPage(int links) {
+    StringBuilder html = new StringBuilder("<html><body>");
+    for (int i = 0; i < links; i++) {
+      if (i % 50 == 0) {
+        html.append("<h2>Section ").append(i / 50).append("</h2><ul>");
+      }
+      html.append("<li><a href=\"/p/").append(i).append("\">Link ").append(i).append("</a></li>");
+      if (i % 50 == 49 || i == links - 1) {
+        html.append("</ul>");
+      }
+    }
+    return html.append("</body></html>").toString();
+  }
+}